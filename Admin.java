@@ -1,10 +1,14 @@
 // Admin.java - Admin Class extending User
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class Admin extends User {
+    // Matches the value computed for earlier releases so old users.dat files can be migrated
+    private static final long serialVersionUID = 6326673343589342358L;
+
     private String adminLevel;
     private String department;
     private int actionsPerformed;
@@ -26,6 +30,10 @@ public class Admin extends User {
         this.workingHours = "9:00 AM - 5:00 PM";
     }
 
+    Admin() {
+        super("ADMIN");
+    }
+
     @Override
     public void displayDashboard() {
         System.out.println(GymUI.BOLD + GymUI.PURPLE + "\n╔══════════════════════════════════════════════════════════════════════╗");
@@ -87,6 +95,32 @@ public class Admin extends User {
         actionsPerformed++;
     }
 
+    @Override
+    protected void writeFields(UserCodec.Writer out) {
+        super.writeFields(out);
+        out.writeString(adminLevel);
+        out.writeString(department);
+        out.writeVarInt(actionsPerformed);
+        out.writeStringList(actionHistory);
+        out.writeString(phoneNumber);
+        out.writeString(address);
+        out.writeDouble(salary);
+        out.writeString(workingHours);
+    }
+
+    @Override
+    protected void readFields(UserCodec.Reader in) throws IOException {
+        super.readFields(in);
+        adminLevel = in.readString();
+        department = in.readString();
+        actionsPerformed = in.readVarInt();
+        actionHistory = in.readStringList();
+        phoneNumber = in.readString();
+        address = in.readString();
+        salary = in.readDouble();
+        workingHours = in.readString();
+    }
+
     // Admin specific methods
     public boolean hasPermission(String action) {
         if (!isActive()) return false;
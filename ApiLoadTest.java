@@ -0,0 +1,212 @@
+// ApiLoadTest.java - Latency of the HTTP API at a fixed request rate
+// Run with: java ApiLoadTest [requestsPerSecond] [seconds]   (default 3000 for 10 s, after 3 s of
+// warm-up; the server runs in a child JVM in a temporary directory; -Dgym.* options are passed on)
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class ApiLoadTest {
+    private static final int MEMBERS = 1000;
+    private static final int WARM_UP_SECONDS = 3;
+    // Keep-alive connections, each used by one request at a time
+    private static final int CONNECTIONS = 32;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("run")) {
+            // As GymManagementSystemMain does for its API server
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+            boolean passed;
+            try {
+                passed = run(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            } catch (Exception e) {
+                e.printStackTrace();
+                passed = false;
+            }
+            System.exit(passed ? 0 : 1);
+        }
+
+        String rate = args.length > 0 ? args[0] : "3000";
+        String seconds = args.length > 1 ? args[1] : "10";
+        List<String> command = JournalRecoveryTest.childCommand(ApiLoadTest.class, "run", rate, seconds);
+        File dir = Files.createTempDirectory("gym-api-load").toFile();
+        Process process = new ProcessBuilder(command).directory(dir).inheritIO().start();
+        System.exit(process.waitFor());
+    }
+
+    // Requests are sent on a fixed schedule whether or not earlier ones have finished, and
+    // each latency is measured from when the request was due, so a stall shows up in the
+    // percentiles instead of just slowing the sender down. The client writes plain HTTP/1.1
+    // on keep-alive sockets: java.net.http.HttpClient costs more CPU per request than the
+    // server does, and would be measuring itself.
+    private static boolean run(int rate, int seconds) throws Exception {
+        UserManager userManager = new UserManager();
+        userManager.registerAdmin("Admin001", "System Administrator", "admin@gym.com", "admin001", "Super");
+        for (int m = 0; m < MEMBERS; m++) {
+            userManager.registerMember("M" + m, "Member " + m, "member" + m + "@gym.com", "password1",
+                    "Basic", "2026-01-01", "2027-12-31", "Strength");
+        }
+        GymApiServer server = new GymApiServer(userManager, 0);
+        server.start();
+        int port = server.getPort();
+
+        String token;
+        try (Connection connection = new Connection(port)) {
+            connection.send("POST", "/api/login", null, "{\"userId\": \"Admin001\", \"password\": \"admin001\"}");
+            token = connection.lastBody.replaceAll(".*\"token\":\\s*\"([^\"]+)\".*", "$1");
+        }
+
+        System.out.println("Warming up for " + WARM_UP_SECONDS + " s at " + rate + " requests/s");
+        fire(port, token, rate, WARM_UP_SECONDS);
+        System.out.println("Measuring for " + seconds + " s at " + rate + " requests/s");
+        long start = System.nanoTime();
+        Result result = fire(port, token, rate, seconds);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.printf("%,d requests in %.1f s (%,.0f requests/s), %d errors%n", latencies.length, elapsed,
+                latencies.length / elapsed, result.errors);
+        System.out.printf("p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), latencies[latencies.length - 1] / 1e6);
+
+        server.stop();
+        userManager.shutdown();
+        return result.errors == 0;
+    }
+
+    private static class Result {
+        final long[] latencies;
+        final int errors;
+
+        Result(long[] latencies, int errors) {
+            this.latencies = latencies;
+            this.errors = errors;
+        }
+    }
+
+    // The mix a front desk and kiosks produce: mostly member lookups, then payments,
+    // check-ins and searches
+    private static Result fire(int port, String token, int rate, int seconds) throws Exception {
+        int total = rate * seconds;
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long[] due = new long[total];
+        long[] latencies = new long[total];
+        AtomicInteger errors = new AtomicInteger();
+        BlockingQueue<Integer> ready = new LinkedBlockingQueue<>();
+
+        ExecutorService senders = Executors.newFixedThreadPool(CONNECTIONS);
+        List<Future<?>> done = new ArrayList<>();
+        for (int c = 0; c < CONNECTIONS; c++) {
+            int seed = c;
+            done.add(senders.submit(() -> {
+                Random random = new Random(seed);
+                try (Connection connection = new Connection(port)) {
+                    for (int i = ready.take(); i >= 0; i = ready.take()) {
+                        String memberId = "M" + random.nextInt(MEMBERS);
+                        int kind = random.nextInt(10);
+                        int status;
+                        if (kind < 5) {
+                            status = connection.send("GET", "/api/members/" + memberId, token, null);
+                        } else if (kind < 7) {
+                            status = connection.send("POST", "/api/members/" + memberId + "/payments", token, "{\"amount\": 1}");
+                        } else if (kind < 8) {
+                            status = connection.send("POST", "/api/members/" + memberId + "/checkin", token, "");
+                        } else {
+                            status = connection.send("GET", "/api/search?q=Member%20" + random.nextInt(100), token, null);
+                        }
+                        latencies[i] = System.nanoTime() - due[i];
+                        if (status >= 500) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            due[i] = start + i * interval;
+            long wait = due[i] - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            ready.add(i);
+        }
+        for (int c = 0; c < CONNECTIONS; c++) {
+            ready.add(-1);
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        senders.shutdown();
+        return new Result(latencies, errors.get());
+    }
+
+    // One keep-alive HTTP/1.1 connection; the server always sends a Content-Length
+    private static class Connection implements Closeable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+        String lastBody;
+
+        Connection(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        // Returns the status code
+        int send(String method, String path, String token, String body) throws IOException {
+            byte[] content = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+            StringBuilder request = new StringBuilder(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                    .append("Host: localhost\r\nContent-Length: ").append(content.length).append("\r\n");
+            if (token != null) {
+                request.append("Authorization: Bearer ").append(token).append("\r\n");
+            }
+            out.write(request.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+            out.write(content);
+            out.flush();
+
+            String statusLine = readLine();
+            int length = 0;
+            for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    length = Integer.parseInt(header.substring(15).trim());
+                }
+            }
+            lastBody = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+            return Integer.parseInt(statusLine.split(" ")[1]);
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int c = in.read(); c != '\n'; c = in.read()) {
+                if (c < 0) {
+                    throw new EOFException("connection closed");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private static double percentile(long[] sorted, double percent) {
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
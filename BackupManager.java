@@ -0,0 +1,313 @@
+// BackupManager.java - Incremental, content-addressed backups of the data directory
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+public class BackupManager {
+    // Files are split into fixed-size chunks stored once under chunks/<aa>/<sha-256>.
+    // A backup is just a manifest listing each file's size and chunk hashes, so files
+    // that did not change (most shards, sealed journal segments, the unchanged prefix
+    // of the active segment) cost nothing after the first backup.
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String MANIFEST_PREFIX = "backup_";
+    private static final String MANIFEST_SUFFIX = ".properties";
+
+    private final File chunkDir;
+    private final File manifestDir;
+    private final int retention;
+
+    // Outcome of one backup run
+    public static class Result {
+        final String name;
+        final int files;
+        final long totalBytes;
+        final long newBytes;
+        final long elapsedMillis;
+
+        Result(String name, int files, long totalBytes, long newBytes, long elapsedMillis) {
+            this.name = name;
+            this.files = files;
+            this.totalBytes = totalBytes;
+            this.newBytes = newBytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getName() { return name; }
+        public int getFiles() { return files; }
+        public long getTotalBytes() { return totalBytes; }
+        public long getNewBytes() { return newBytes; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    public BackupManager(String backupRoot) {
+        this(backupRoot, Integer.getInteger("gym.backup.keep", 24));
+    }
+
+    public BackupManager(String backupRoot, int retention) {
+        this.chunkDir = new File(backupRoot, "chunks");
+        this.manifestDir = new File(backupRoot, "manifests");
+        this.retention = retention;
+        chunkDir.mkdirs();
+        manifestDir.mkdirs();
+    }
+
+    // Back up the given files (name in backup -> file). A length limit reads only a
+    // prefix, for files that are being appended to while the backup runs. Info values
+    // are stored in the manifest as they are.
+    public synchronized Result createBackup(Map<String, File> files, Map<String, Long> lengthLimits,
+                                            Map<String, String> info) throws IOException {
+        long start = System.nanoTime();
+        long createdAt = System.currentTimeMillis();
+        Properties manifest = new Properties();
+        manifest.setProperty("createdAt", String.valueOf(createdAt));
+        for (Map.Entry<String, String> entry : info.entrySet()) {
+            manifest.setProperty("info." + entry.getKey(), entry.getValue());
+        }
+        long totalBytes = 0;
+        long newBytes = 0;
+        int fileCount = 0;
+
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        for (Map.Entry<String, File> entry : files.entrySet()) {
+            File file = entry.getValue();
+            if (!file.exists()) {
+                continue;
+            }
+            try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long length = Math.min(source.size(), lengthLimits.getOrDefault(entry.getKey(), Long.MAX_VALUE));
+                StringBuilder chunks = new StringBuilder();
+                for (long position = 0; position < length; position += CHUNK_SIZE) {
+                    int chunkLength = (int) Math.min(CHUNK_SIZE, length - position);
+                    String hash = hashRange(source, position, chunkLength, buffer, digest);
+                    File chunk = chunkFile(hash);
+                    if (!chunk.exists()) {
+                        copyRange(source, position, chunkLength, chunk);
+                        newBytes += chunkLength;
+                    }
+                    if (chunks.length() > 0) {
+                        chunks.append(',');
+                    }
+                    chunks.append(hash);
+                }
+                manifest.setProperty("file." + entry.getKey(), length + ":" + chunks);
+                totalBytes += length;
+                fileCount++;
+            }
+        }
+
+        String name = MANIFEST_PREFIX + createdAt;
+        File tmp = new File(manifestDir, name + MANIFEST_SUFFIX + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmp)) {
+            manifest.store(os, "Gym data backup");
+        }
+        Files.move(tmp.toPath(), new File(manifestDir, name + MANIFEST_SUFFIX).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        applyRetention();
+        return new Result(name, fileCount, totalBytes, newBytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Backup names, oldest first
+    public List<String> listBackups() {
+        List<String> names = new ArrayList<>();
+        File[] manifests = manifestDir.listFiles((dir, n) -> n.startsWith(MANIFEST_PREFIX) && n.endsWith(MANIFEST_SUFFIX));
+        if (manifests != null) {
+            for (File manifest : manifests) {
+                String fileName = manifest.getName();
+                names.add(fileName.substring(0, fileName.length() - MANIFEST_SUFFIX.length()));
+            }
+        }
+        names.sort(Comparator.comparingLong(BackupManager::createdAt));
+        return names;
+    }
+
+    private static long createdAt(String name) {
+        try {
+            return Long.parseLong(name.substring(MANIFEST_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Keep the newest backups, then delete chunks no remaining manifest refers to
+    private void applyRetention() throws IOException {
+        List<String> backups = listBackups();
+        if (backups.size() <= retention) {
+            return;
+        }
+        for (String name : backups.subList(0, backups.size() - retention)) {
+            File manifest = new File(manifestDir, name + MANIFEST_SUFFIX);
+            if (!manifest.delete()) {
+                System.err.println("Error deleting backup manifest: " + manifest.getName());
+            }
+        }
+
+        Set<String> live = new HashSet<>();
+        for (String name : listBackups()) {
+            Properties manifest = readManifest(name);
+            for (String key : manifest.stringPropertyNames()) {
+                if (key.startsWith("file.")) {
+                    live.addAll(chunkList(manifest.getProperty(key)));
+                }
+            }
+        }
+        File[] prefixes = chunkDir.listFiles();
+        if (prefixes == null) {
+            return;
+        }
+        for (File prefix : prefixes) {
+            File[] chunks = prefix.listFiles();
+            if (chunks == null) {
+                continue;
+            }
+            for (File chunk : chunks) {
+                if (!live.contains(chunk.getName()) && !chunk.delete()) {
+                    System.err.println("Error deleting backup chunk: " + chunk.getName());
+                }
+            }
+        }
+    }
+
+    Properties readManifest(String name) throws IOException {
+        Properties manifest = new Properties();
+        try (InputStream is = new FileInputStream(new File(manifestDir, name + MANIFEST_SUFFIX))) {
+            manifest.load(is);
+        }
+        return manifest;
+    }
+
+    static List<String> chunkList(String entry) {
+        String chunks = entry.substring(entry.indexOf(':') + 1);
+        return chunks.isEmpty() ? Collections.emptyList() : Arrays.asList(chunks.split(","));
+    }
+
+    public long getCreatedAt(String name) throws IOException {
+        return Long.parseLong(readManifest(name).getProperty("createdAt", "0"));
+    }
+
+    public String getInfo(String name, String key) throws IOException {
+        return readManifest(name).getProperty("info." + key);
+    }
+
+    // Name in backup -> size, for every file in a backup
+    public Map<String, Long> listFiles(String name) throws IOException {
+        Properties manifest = readManifest(name);
+        Map<String, Long> files = new TreeMap<>();
+        for (String key : manifest.stringPropertyNames()) {
+            if (key.startsWith("file.")) {
+                String entry = manifest.getProperty(key);
+                files.put(key.substring("file.".length()), Long.parseLong(entry.substring(0, entry.indexOf(':'))));
+            }
+        }
+        return files;
+    }
+
+    // Rebuild every file of a backup under targetDir, files in parallel. Each chunk is
+    // checked against its hash, so a damaged backup fails instead of restoring bad data.
+    public int restoreFiles(String name, File targetDir) throws IOException {
+        Properties manifest = readManifest(name);
+        List<String> entries = new ArrayList<>();
+        for (String key : manifest.stringPropertyNames()) {
+            if (key.startsWith("file.")) {
+                entries.add(key.substring("file.".length()));
+            }
+        }
+        try {
+            entries.parallelStream().forEach(entry -> {
+                try {
+                    restoreFile(manifest, entry, new File(targetDir, entry));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return entries.size();
+    }
+
+    public void restoreFile(String name, String entry, File target) throws IOException {
+        restoreFile(readManifest(name), entry, target);
+    }
+
+    private void restoreFile(Properties manifest, String entry, File target) throws IOException {
+        String value = manifest.getProperty("file." + entry);
+        if (value == null) {
+            throw new FileNotFoundException(entry + " is not in the backup");
+        }
+        long size = Long.parseLong(value.substring(0, value.indexOf(':')));
+        target.getParentFile().mkdirs();
+        MessageDigest digest = newDigest();
+        long written = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+            for (String hash : chunkList(value)) {
+                byte[] chunk = Files.readAllBytes(chunkFile(hash).toPath());
+                if (!toHex(digest.digest(chunk)).equals(hash)) {
+                    throw new IOException("Backup chunk " + hash + " is corrupt");
+                }
+                out.write(chunk);
+                written += chunk.length;
+            }
+        }
+        if (written != size) {
+            throw new IOException(entry + " restored " + written + " bytes, expected " + size);
+        }
+    }
+
+    File chunkFile(String hash) {
+        return new File(new File(chunkDir, hash.substring(0, 2)), hash);
+    }
+
+    private static String hashRange(FileChannel source, long position, int length, ByteBuffer buffer,
+                                    MessageDigest digest) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("File shrank during backup");
+            }
+        }
+        buffer.flip();
+        digest.reset();
+        digest.update(buffer);
+        return toHex(digest.digest());
+    }
+
+    // Chunks are copied channel to channel and renamed into place once complete
+    private static void copyRange(FileChannel source, long position, int length, File chunk) throws IOException {
+        chunk.getParentFile().mkdirs();
+        File tmp = new File(chunk.getPath() + ".tmp");
+        try (FileChannel target = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long copied = 0;
+            while (copied < length) {
+                long n = source.transferTo(position + copied, length - copied, target);
+                if (n <= 0) {
+                    throw new EOFException("File shrank during backup");
+                }
+                copied += n;
+            }
+        }
+        Files.move(tmp.toPath(), chunk.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,174 @@
+// ConcurrencyStressTest.java - 64 concurrent clients assigning trainers, paying and logging in
+// Run with: java ConcurrencyStressTest   (runs in a temporary directory: a load phase, then a
+// restart that checks the same invariants against what was saved; -Dgym.* options are passed on)
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class ConcurrencyStressTest {
+    private static final int CLIENTS = 64;
+    private static final int OPERATIONS = 3000;
+    private static final int TRAINERS = 10;
+    private static final int CAPACITY = 5;
+    private static final int MEMBERS = 400;
+    private static final String PAYMENTS_FILE = "expected_payments.txt";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            boolean passed;
+            try {
+                passed = args[0].equals("load") ? runLoad() : check(new UserManager(), readPayments());
+            } catch (Exception e) {
+                e.printStackTrace();
+                passed = false;
+            }
+            System.exit(passed ? 0 : 1);
+        }
+
+        File dir = Files.createTempDirectory("gym-stress").toFile();
+        boolean passed = JournalRecoveryTest.runChild(ConcurrencyStressTest.class, dir, "load")
+                && JournalRecoveryTest.runChild(ConcurrencyStressTest.class, dir, "restart");
+        System.out.println(passed ? "PASS: counts and assignments stayed consistent under " + CLIENTS + " clients"
+                : "FAIL: see output above (data left in " + dir + ")");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Every client logs in with its own session, then assigns and unassigns random members
+    // to random trainers and records payments, while a watcher checks no trainer is ever
+    // over capacity
+    private static boolean runLoad() throws Exception {
+        UserManager userManager = new UserManager();
+        for (int t = 0; t < TRAINERS; t++) {
+            userManager.registerTrainer("T" + t, "Trainer " + t, "trainer" + t + "@gym.com", "password1",
+                    "Yoga", "5 years", 20.0, CAPACITY);
+        }
+        for (int m = 0; m < MEMBERS; m++) {
+            userManager.registerMember("M" + m, "Member " + m, "member" + m + "@gym.com", "password1",
+                    "Basic", "2026-01-01", "2027-12-31", "Strength");
+        }
+
+        AtomicIntegerArray payments = new AtomicIntegerArray(MEMBERS);
+        AtomicInteger assigned = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                for (int t = 0; t < TRAINERS; t++) {
+                    int clients = userManager.getTrainerById("T" + t).getCurrentClients();
+                    if (clients < 0 || clients > CAPACITY) {
+                        System.out.println("  T" + t + " had " + clients + " clients at once");
+                        failures.incrementAndGet();
+                    }
+                }
+            }
+        });
+        watcher.start();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<?>> done = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < CLIENTS; c++) {
+            int client = c;
+            done.add(clients.submit(() -> {
+                Random random = new Random(client);
+                String memberId = "M" + random.nextInt(MEMBERS);
+                UserSession session = userManager.login(memberId, "password1");
+                if (session == null || !session.getUserId().equals(memberId)) {
+                    failures.incrementAndGet();
+                }
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int member = random.nextInt(MEMBERS);
+                    int action = random.nextInt(10);
+                    if (action < 2) {
+                        userManager.unassignTrainerFromMember("M" + member);
+                    } else if (action < 8) {
+                        if (userManager.assignTrainerToMember("M" + member, "T" + random.nextInt(TRAINERS))) {
+                            assigned.incrementAndGet();
+                        } else {
+                            refused.incrementAndGet();
+                        }
+                    } else if (userManager.recordPayment("M" + member, 1.0)) {
+                        payments.incrementAndGet(member);
+                    }
+                }
+                if (session == null || userManager.getSession(session.getToken()) != session) {
+                    failures.incrementAndGet();
+                }
+                userManager.logout(session);
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        running.set(false);
+        watcher.join();
+
+        System.out.printf("  %,d operations in %d ms (%,.0f ops/s): %,d assigned, %,d refused%n",
+                CLIENTS * OPERATIONS, elapsed / 1_000_000, CLIENTS * OPERATIONS / (elapsed / 1e9),
+                assigned.get(), refused.get());
+        boolean consistent = check(userManager, payments) && failures.get() == 0;
+        userManager.shutdown();
+        StringBuilder expected = new StringBuilder();
+        for (int m = 0; m < MEMBERS; m++) {
+            expected.append(payments.get(m)).append('\n');
+        }
+        Files.write(new File(PAYMENTS_FILE).toPath(), expected.toString().getBytes());
+        return consistent;
+    }
+
+    // What the load phase counted, for checking the restarted data
+    private static AtomicIntegerArray readPayments() throws Exception {
+        List<String> lines = Files.readAllLines(new File(PAYMENTS_FILE).toPath());
+        AtomicIntegerArray payments = new AtomicIntegerArray(MEMBERS);
+        for (int m = 0; m < MEMBERS; m++) {
+            payments.set(m, Integer.parseInt(lines.get(m)));
+        }
+        return payments;
+    }
+
+    // Each trainer's client list, count, availability and the member -> trainer index must
+    // agree with the members' own assignments, and every member's payments must add up
+    private static boolean check(UserManager userManager, AtomicIntegerArray payments) {
+        int inconsistent = 0;
+        int total = 0;
+        for (int t = 0; t < TRAINERS; t++) {
+            String trainerId = "T" + t;
+            Trainer trainer = userManager.getTrainerById(trainerId);
+            Set<String> expected = new HashSet<>();
+            for (int m = 0; m < MEMBERS; m++) {
+                if (trainerId.equals(userManager.getMemberById("M" + m).getAssignedTrainerId())) {
+                    expected.add("M" + m);
+                }
+            }
+            Set<String> indexed = new HashSet<>();
+            for (Member member : userManager.getMembersAssignedToTrainer(trainerId)) {
+                indexed.add(member.getUserId());
+            }
+            total += expected.size();
+            String availability = expected.size() >= CAPACITY ? "Fully Booked" : "Available";
+            if (expected.size() > CAPACITY || !expected.equals(new HashSet<>(trainer.getAssignedMemberIds()))
+                    || !expected.equals(indexed) || trainer.getCurrentClients() != expected.size()
+                    || !trainer.getAvailability().equals(availability)) {
+                System.out.println("  " + trainerId + ": " + expected.size() + " members, list " + trainer.getAssignedMemberIds().size()
+                        + ", index " + indexed.size() + ", count " + trainer.getCurrentClients() + ", " + trainer.getAvailability());
+                inconsistent++;
+            }
+        }
+        for (int m = 0; m < MEMBERS; m++) {
+            double paid = userManager.getMemberById("M" + m).getTotalPayments();
+            if (paid != payments.get(m)) {
+                System.out.println("  M" + m + ": paid $" + paid + ", expected $" + payments.get(m));
+                inconsistent++;
+            }
+        }
+        System.out.println("  " + total + " members assigned, " + inconsistent + " inconsistencies");
+        return inconsistent == 0;
+    }
+}
@@ -0,0 +1,435 @@
+// DataJournal.java - Append-only change log for user data
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+public class DataJournal {
+    // Record types. Every record carries the resulting value rather than a delta,
+    // so replaying a record that is already reflected in the snapshot is harmless.
+    public static final byte REGISTER = 1;
+    public static final byte UPDATE_USER = 2;
+    public static final byte UPDATE_EMAIL = 3;
+    public static final byte UPDATE_PASSWORD = 4;
+    public static final byte UPDATE_STATUS = 5;
+    public static final byte ASSIGN_TRAINER = 6;
+    public static final byte UNASSIGN_TRAINER = 7;
+    public static final byte ATTENDANCE = 8;
+    public static final byte PAYMENT = 9;
+    public static final byte LOGIN = 10; // older journals only; written as LOGIN_AT now
+    public static final byte DELETE = 11;
+    public static final byte CLEAR = 12;
+    public static final byte LOGIN_AT = 13;
+
+    private static final String SEGMENT_PREFIX = "segment_";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // The journal is a sequence of numbered segment files. New records go to the
+    // highest segment; rotate() seals it so a snapshot can make it obsolete.
+    private final File directory;
+    private long currentSegment;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long recordCount;
+
+    // Segments up to snapshotSegment are already contained in the snapshot (or, after a
+    // restore, belong to the timeline it replaced), so writing always resumes in a later segment
+    public DataJournal(String directoryPath, long snapshotSegment) {
+        this.directory = new File(directoryPath);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        List<Long> segments = listSegments();
+        long highest = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        this.currentSegment = Math.max(highest, snapshotSegment + 1);
+    }
+
+    public File getDirectory() { return directory; }
+    public synchronized long getCurrentSegment() { return currentSegment; }
+    public synchronized long getRecordCount() { return recordCount; }
+
+    public File segmentFile(long segment) {
+        return new File(directory, segmentFileName(segment));
+    }
+
+    public static String segmentFileName(long segment) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX);
+    }
+
+    public List<Long> listSegments() {
+        List<Long> segments = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                long segment = segmentNumber(f.getName());
+                if (segment >= 0) {
+                    segments.add(segment);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    // The segment number of a segment file name, or -1 for any other file
+    public static long segmentNumber(String name) {
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+            try {
+                return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                // Not a segment file
+            }
+        }
+        return -1;
+    }
+
+    // Copy the intact records of a segment that were written at or before a point in
+    // time; used to roll a restored backup forward. Returns the number of records kept.
+    public static int copyRecordsUntil(File source, File target, long untilMillis) throws IOException {
+        int copied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target)))) {
+            while (true) {
+                int length;
+                int expectedCrc;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    expectedCrc = in.readInt();
+                    if (length <= 0) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                long timestamp = new DataInputStream(new ByteArrayInputStream(payload, 1, 8)).readLong();
+                if (timestamp > untilMillis) {
+                    continue;
+                }
+                out.writeInt(length);
+                out.writeInt(expectedCrc);
+                out.write(payload);
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    // Record writers
+    public boolean logRegister(User user) {
+        return append(REGISTER, user.getUserId(), body -> writeUser(body, user));
+    }
+
+    public boolean logUserUpdate(User user) {
+        return append(UPDATE_USER, user.getUserId(), body -> writeUser(body, user));
+    }
+
+    public boolean logEmail(String userId, String email) {
+        return append(UPDATE_EMAIL, userId, body -> body.writeUTF(email));
+    }
+
+    public boolean logPassword(String userId, String password) {
+        return append(UPDATE_PASSWORD, userId, body -> body.writeUTF(password));
+    }
+
+    public boolean logStatus(String userId, boolean isActive) {
+        return append(UPDATE_STATUS, userId, body -> body.writeBoolean(isActive));
+    }
+
+    public boolean logAssignment(String memberId, String trainerId) {
+        return append(ASSIGN_TRAINER, memberId, body -> body.writeUTF(trainerId));
+    }
+
+    public boolean logUnassignment(String memberId) {
+        return append(UNASSIGN_TRAINER, memberId, body -> {});
+    }
+
+    public boolean logAttendance(String memberId, String date) {
+        return append(ATTENDANCE, memberId, body -> body.writeUTF(date));
+    }
+
+    public boolean logPayment(String memberId, double totalPayments) {
+        return append(PAYMENT, memberId, body -> body.writeDouble(totalPayments));
+    }
+
+    public boolean logLogin(String userId, long lastLoginAt) {
+        return append(LOGIN_AT, userId, body -> body.writeLong(lastLoginAt));
+    }
+
+    public boolean logDelete(String userId) {
+        return append(DELETE, userId, body -> {});
+    }
+
+    public boolean logClear() {
+        return append(CLEAR, "", body -> {});
+    }
+
+    private interface BodyWriter {
+        void write(DataOutputStream body) throws IOException;
+    }
+
+    // Records are buffered; sync() makes everything appended so far durable.
+    // Frame layout: [int length][int crc][byte type][long timestamp][utf userId][body]
+    private synchronized boolean append(byte type, String userId, BodyWriter bodyWriter) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream record = new DataOutputStream(bytes);
+            record.writeByte(type);
+            record.writeLong(System.currentTimeMillis());
+            record.writeUTF(userId);
+            bodyWriter.write(record);
+            record.flush();
+
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            DataOutputStream stream = openStream();
+            stream.writeInt(payload.length);
+            stream.writeInt((int) crc.getValue());
+            stream.write(payload);
+            recordCount++;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing journal record: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private DataOutputStream openStream() throws IOException {
+        if (out == null) {
+            fileOut = new FileOutputStream(segmentFile(currentSegment), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        }
+        return out;
+    }
+
+    public synchronized boolean sync() {
+        try {
+            if (out != null) {
+                out.flush();
+                fileOut.getChannel().force(false);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error syncing journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        } finally {
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    // Seal the active segment and start a new one; returns the sealed segment number
+    public synchronized long rotate() {
+        close();
+        long sealed = currentSegment;
+        currentSegment++;
+        recordCount = 0;
+        return sealed;
+    }
+
+    // Segments whose records are all contained in a snapshot move to the archive, where
+    // they stay available for rolling a restored backup forward
+    public File getArchiveDirectory() {
+        return new File(directory, "archive");
+    }
+
+    public synchronized void archiveSegmentsThrough(long segment) {
+        File archive = getArchiveDirectory();
+        archive.mkdirs();
+        for (long seq : listSegments()) {
+            if (seq <= segment && seq != currentSegment) {
+                File f = segmentFile(seq);
+                if (!f.renameTo(new File(archive, f.getName()))) {
+                    System.err.println("Error archiving journal segment: " + f.getName());
+                }
+            }
+        }
+    }
+
+    // Drop archived segments no backup can need any more
+    public synchronized void pruneArchiveThrough(long segment) {
+        File[] archived = getArchiveDirectory().listFiles();
+        if (archived == null) {
+            return;
+        }
+        for (File f : archived) {
+            long seq = segmentNumber(f.getName());
+            if (seq >= 0 && seq <= segment && !f.delete()) {
+                System.err.println("Error deleting archived journal segment: " + f.getName());
+            }
+        }
+    }
+
+    // Replay every intact record from segments after the given one, oldest first.
+    // A torn or corrupt tail (e.g. from a crash mid-write) ends that segment and is cut off.
+    // The id of every user a record touched is added to touchedUserIds; a CLEAR record
+    // adds the empty id.
+    public synchronized int replay(Map<String, User> users, Map<String, String> assignments, long afterSegment,
+                                   Set<String> touchedUserIds) {
+        int applied = 0;
+        for (long seq : listSegments()) {
+            if (seq > afterSegment) {
+                applied += replaySegment(segmentFile(seq), users, assignments, touchedUserIds);
+            }
+        }
+        recordCount = applied;
+        return applied;
+    }
+
+    private int replaySegment(File file, Map<String, User> users, Map<String, String> assignments,
+                              Set<String> touchedUserIds) {
+        int applied = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int expectedCrc = in.readInt();
+                if (length <= 0) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+
+                touchedUserIds.add(apply(new DataInputStream(new ByteArrayInputStream(payload)), users, assignments));
+                validLength += 8 + length;
+                applied++;
+            }
+        } catch (EOFException e) {
+            // Truncated final record - everything before it has been applied
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Error replaying journal: " + e.getMessage());
+        }
+
+        if (validLength < file.length()) {
+            truncateTo(file, validLength);
+        }
+        return applied;
+    }
+
+    // Returns the id of the user the record touched
+    private String apply(DataInputStream record, Map<String, User> users, Map<String, String> assignments)
+            throws IOException, ClassNotFoundException {
+        byte type = record.readByte();
+        record.readLong(); // timestamp
+        String userId = record.readUTF();
+        User user = users.get(userId);
+
+        switch (type) {
+            case REGISTER:
+            case UPDATE_USER:
+                User updated = readUser(record);
+                users.put(updated.getUserId(), updated);
+                break;
+            case UPDATE_EMAIL:
+                String email = record.readUTF();
+                if (user != null) user.setEmail(email);
+                break;
+            case UPDATE_PASSWORD:
+                String password = record.readUTF();
+                if (user != null) user.setPassword(password);
+                break;
+            case UPDATE_STATUS:
+                boolean active = record.readBoolean();
+                if (user != null) user.setActive(active);
+                break;
+            case ASSIGN_TRAINER:
+                String trainerId = record.readUTF();
+                assignments.put(userId, trainerId);
+                if (user instanceof Member) ((Member) user).setAssignedTrainerId(trainerId);
+                break;
+            case UNASSIGN_TRAINER:
+                assignments.remove(userId);
+                if (user instanceof Member) ((Member) user).setAssignedTrainerId(null);
+                break;
+            case ATTENDANCE:
+                String date = record.readUTF();
+                if (user instanceof Member && !((Member) user).getAttendanceHistory().contains(date)) {
+                    ((Member) user).getAttendanceHistory().add(date);
+                }
+                break;
+            case PAYMENT:
+                double totalPayments = record.readDouble();
+                if (user instanceof Member) ((Member) user).setTotalPayments(totalPayments);
+                break;
+            case LOGIN:
+                String lastLogin = record.readUTF();
+                if (user != null) user.setLastLoginDate(lastLogin);
+                break;
+            case LOGIN_AT:
+                long lastLoginAt = record.readLong();
+                if (user != null) user.setLastLoginAt(lastLoginAt);
+                break;
+            case DELETE:
+                users.remove(userId);
+                assignments.remove(userId);
+                break;
+            case CLEAR:
+                users.clear();
+                assignments.clear();
+                break;
+            default:
+                throw new IOException("Unknown journal record type: " + type);
+        }
+        return userId;
+    }
+
+    private void truncateTo(File file, long length) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        } catch (IOException e) {
+            System.err.println("Error truncating journal: " + e.getMessage());
+        }
+    }
+
+    private static void writeUser(DataOutputStream body, User user) throws IOException {
+        byte[] bytes = UserCodec.encode(user);
+        body.writeInt(bytes.length);
+        body.write(bytes);
+    }
+
+    private static User readUser(DataInputStream record) throws IOException, ClassNotFoundException {
+        byte[] bytes = new byte[record.readInt()];
+        record.readFully(bytes);
+        if (isJavaSerialized(bytes)) {
+            // Records written before the binary codec was introduced
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (User) ois.readObject();
+            }
+        }
+        return UserCodec.decodeOne(bytes);
+    }
+
+    private static boolean isJavaSerialized(byte[] bytes) {
+        return bytes.length >= 2 && (bytes[0] & 0xFF) == 0xAC && (bytes[1] & 0xFF) == 0xED;
+    }
+}
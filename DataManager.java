@@ -1,57 +1,414 @@
 // DataManager.java - Handles data persistence
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class DataManager {
     private static final String DATA_DIR = "gym_data/";
-    private static final String USERS_FILE = DATA_DIR + "users.dat";
+    private static final String USERS_DIR = DATA_DIR + "users/";
+    private static final String SINGLE_USERS_FILE = DATA_DIR + "users.bin";
+    private static final String LEGACY_USERS_FILE = DATA_DIR + "users.dat";
     private static final String ASSIGNMENTS_FILE = DATA_DIR + "assignments.dat";
     private static final String WORKOUTS_FILE = DATA_DIR + "workouts.dat";
     private static final String PAYMENTS_FILE = DATA_DIR + "payments.dat";
+    private static final String JOURNAL_DIR = DATA_DIR + "journal/";
+    private static final String TIMELINES_FILE = "timelines.txt";
+    private static final String LEGACY_JOURNAL_FILE = DATA_DIR + "journal.log";
+    private static final String SNAPSHOT_META_FILE = DATA_DIR + "snapshot.properties";
+    private static final String HOT_FIELDS_FILE = DATA_DIR + "hotfields.dat";
+    private static final String BACKUP_DIR = DATA_DIR + "backups/";
+
+    // Users are hash-partitioned by userId into shard files; only shards with
+    // changed users are rewritten
+    public static final int SHARD_COUNT = 32;
+    private static final int INDEX_MAGIC = 0x47594D49; // "GYMI"
+    private static final int INDEX_VERSION = 2;
+
+    // Journaled mode appends one small record per change instead of rewriting
+    // the user shards; disable with -Dgym.journal=false to fall back to full saves
+    private final boolean journalingEnabled;
+    private final DataJournal journal;
+    private final Set<Integer> dirtyShards = ConcurrentHashMap.newKeySet();
+    // Shards changed before a sealed journal segment, waiting for a snapshot that covers it
+    private final Map<Integer, Long> pendingShards = new ConcurrentHashMap<>();
+    // User write stamps as of each shard's last write. A dirty shard whose users all still
+    // have those stamps, with none added or removed, is not rewritten; a shard not yet
+    // written since startup always is.
+    private final Map<Integer, Map<String, Long>> writtenStamps = new ConcurrentHashMap<>();
+
+    // Status, payments, expiry and trainer are updated in place here; null if the
+    // file could not be mapped, in which case those changes dirty the shard instead
+    private final HotFieldStore hotFields;
+
+    // With -Dgym.lazyLoad=true startup reads only the per-shard summary indexes and
+    // users are loaded from their shard on first access
+    private final boolean lazyLoading = Boolean.getBoolean("gym.lazyLoad");
+    private final int lazyCacheSize = Integer.getInteger("gym.lazy.cacheSize", 1000);
+    private volatile LazyUserMap lazyUsers;
+
+    private final BackupManager backupManager = new BackupManager(BACKUP_DIR);
+
+    // Last snapshot written (user shards + assignments.dat) and the journal segment it covers
+    private volatile long snapshotSegment;
+    private volatile long snapshotTime;
+    private volatile long snapshotBytes;
+    // First journal segment of the current timeline. Each restore starts a new timeline
+    // numbered above every segment written before, so segment numbers never repeat
+    // across restores and a segment number identifies one history.
+    private volatile long timelineStart;
 
     public DataManager() {
         createDataDirectory();
+        loadSnapshotMeta();
+        this.journalingEnabled = Boolean.parseBoolean(System.getProperty("gym.journal", "true"));
+        this.journal = journalingEnabled ? new DataJournal(JOURNAL_DIR, Math.max(snapshotSegment, timelineStart - 1)) : null;
+        if (journal != null) {
+            migrateLegacyJournal();
+        }
+        this.hotFields = openHotFields();
+    }
+
+    private HotFieldStore openHotFields() {
+        try {
+            return new HotFieldStore(HOT_FIELDS_FILE);
+        } catch (IOException e) {
+            System.err.println("Error opening hot field file: " + e.getMessage());
+            return null;
+        }
     }
 
     private void createDataDirectory() {
-        File dir = new File(DATA_DIR);
+        File dir = new File(USERS_DIR);
         if (!dir.exists()) {
             dir.mkdirs();
         }
     }
 
-    // Save all users to file
+    // Shard bookkeeping
+    public static int shardOf(String userId) {
+        return Math.floorMod(userId.hashCode(), SHARD_COUNT);
+    }
+
+    private static File shardFile(int shard) {
+        return new File(USERS_DIR, String.format("shard_%02d.bin", shard));
+    }
+
+    private static File shardIndexFile(int shard) {
+        return new File(USERS_DIR, String.format("shard_%02d.idx", shard));
+    }
+
+    public void markDirty(String userId) {
+        if (userId != null) {
+            dirtyShards.add(shardOf(userId));
+            if (lazyUsers != null) {
+                lazyUsers.pin(userId);
+            }
+        }
+    }
+
+    private boolean isShardClean(int shard) {
+        return !dirtyShards.contains(shard) && !pendingShards.containsKey(shard);
+    }
+
+    // Let lazily loaded users whose changes are all on disk be evicted again
+    public void releaseCleanUsers() {
+        if (lazyUsers != null) {
+            lazyUsers.unpinWhere(this::isShardClean);
+        }
+    }
+
+    public void markAllDirty() {
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            dirtyShards.add(shard);
+        }
+    }
+
+    // Hand the current dirty set to a writer; changes made afterwards start a new set
+    private Set<Integer> takeDirtyShards() {
+        Set<Integer> taken = new HashSet<>();
+        for (Integer shard : dirtyShards) {
+            if (dirtyShards.remove(shard)) {
+                taken.add(shard);
+            }
+        }
+        return taken;
+    }
+
+    // Save changed users to their shard files
     public boolean saveUsers(Map<String, User> users) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(USERS_FILE))) {
-            oos.writeObject(users);
+        Set<Integer> shards = takeDirtyShards();
+        try {
+            writeShards(users, shards);
             System.out.println(GymUI.GREEN + "✅ Data saved successfully!" + GymUI.RESET);
             return true;
         } catch (IOException e) {
+            dirtyShards.addAll(shards);
             System.err.println("Error saving users: " + e.getMessage());
             return false;
         }
     }
 
-    // Load all users from file
-    @SuppressWarnings("unchecked")
+    // Load all users, decoding the shard files in parallel
     public Map<String, User> loadUsers() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(USERS_FILE))) {
-            Map<String, User> loadedUsers = (Map<String, User>) ois.readObject();
+        File[] shardFiles = new File(USERS_DIR).listFiles((dir, name) -> name.startsWith("shard_") && name.endsWith(".bin"));
+        if (shardFiles == null || shardFiles.length == 0) {
+            if (new File(SINGLE_USERS_FILE).exists() || new File(LEGACY_USERS_FILE).exists()) {
+                return migrateToShards();
+            }
+            System.out.println(GymUI.YELLOW + "⚠️ No existing data found. Starting fresh." + GymUI.RESET);
+            return new HashMap<>();
+        }
+        markOutdatedShards();
+        if (lazyLoading) {
+            return loadUserIndex();
+        }
+        try {
+            List<List<User>> decoded = Arrays.stream(shardFiles).parallel()
+                    .map(DataManager::readShard)
+                    .collect(Collectors.toList());
+            Map<String, User> loadedUsers = new HashMap<>();
+            for (List<User> shardUsers : decoded) {
+                for (User user : shardUsers) {
+                    loadedUsers.put(user.getUserId(), user);
+                }
+            }
+            if (hotFields != null) {
+                hotFields.applyTo(loadedUsers);
+            }
             System.out.println(GymUI.CYAN + "📂 Data loaded successfully!" + GymUI.RESET);
             return loadedUsers;
-        } catch (FileNotFoundException e) {
-            System.out.println(GymUI.YELLOW + "⚠️ No existing data found. Starting fresh." + GymUI.RESET);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error loading users: " + e.getCause().getMessage());
             return new HashMap<>();
+        }
+    }
+
+    // Shards written in an older format are still readable; dirty them so the next
+    // save rewrites them in the current one
+    private void markOutdatedShards() {
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            File file = shardFile(shard);
+            try {
+                if (file.exists() && UserCodec.readVersion(file) < UserCodec.VERSION) {
+                    dirtyShards.add(shard);
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading shard version: " + e.getMessage());
+            }
+        }
+    }
+
+    // Lazy mode: read only the summary index of each shard
+    private Map<String, User> loadUserIndex() {
+        Map<String, LazyUserMap.Summary> summaries = new HashMap<>();
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            try {
+                readShardIndex(shard, summaries);
+            } catch (IOException e) {
+                System.err.println("Error loading user index: " + e.getMessage());
+                return new HashMap<>();
+            }
+        }
+        LazyUserMap users = new LazyUserMap(summaries, DataManager::shardFile, lazyCacheSize);
+        if (hotFields != null) {
+            users.addLoadListener(hotFields::applyTo);
+        }
+        lazyUsers = users;
+        System.out.println(GymUI.CYAN + "📂 User index loaded (" + summaries.size() + " users)" + GymUI.RESET);
+        return users;
+    }
+
+    // Index layout: [int magic][int version][long shardLength][int count]
+    // count x ([utf id][utf role][email][name][phone][int offset]), strings after the role as
+    // [boolean present][utf]. An index of another version or that does not match its shard's
+    // length (e.g. after a crash between the two renames) is rebuilt from the shard.
+    private static void readShardIndex(int shard, Map<String, LazyUserMap.Summary> summaries) throws IOException {
+        File shardFile = shardFile(shard);
+        if (!shardFile.exists()) {
+            return;
+        }
+        File indexFile = shardIndexFile(shard);
+        if (indexFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if (in.readInt() == INDEX_MAGIC && in.readInt() == INDEX_VERSION && in.readLong() == shardFile.length()) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String userId = in.readUTF();
+                        String role = in.readUTF();
+                        String email = readOptionalUTF(in);
+                        String name = readOptionalUTF(in);
+                        String phone = readOptionalUTF(in);
+                        summaries.put(userId, new LazyUserMap.Summary(userId, role, shard, email, name, phone, in.readInt()));
+                    }
+                    return;
+                }
+            } catch (EOFException e) {
+                // Truncated or older index; rebuilt below
+            }
+        }
+
+        UserCodec.Reader reader = new UserCodec.Reader(Files.readAllBytes(shardFile.toPath()));
+        List<User> users = new ArrayList<>(reader.getRecordCount());
+        int[] offsets = new int[reader.getRecordCount()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = reader.getPosition();
+            users.add(reader.readUser());
+        }
+        Path indexTmp = Paths.get(shardIndexFile(shard) + ".tmp");
+        writeShardIndex(indexTmp, users, offsets, shardFile.length());
+        Files.move(indexTmp, shardIndexFile(shard).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            summaries.put(user.getUserId(), new LazyUserMap.Summary(user.getUserId(), user.getRole(), shard,
+                    user.getEmail(), user.getName(), user.getPhoneNumber(), offsets[i]));
+        }
+    }
+
+    private static void writeShardIndex(Path path, List<User> users, int[] offsets, long shardLength) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(shardLength);
+            out.writeInt(users.size());
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                out.writeUTF(user.getUserId());
+                out.writeUTF(user.getRole());
+                writeOptionalUTF(out, user.getEmail());
+                writeOptionalUTF(out, user.getName());
+                writeOptionalUTF(out, user.getPhoneNumber());
+                out.writeInt(offsets[i]);
+            }
+        }
+    }
+
+    private static void writeOptionalUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readOptionalUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static List<User> readShard(File file) {
+        try {
+            return UserCodec.decode(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Split an older single-file store (users.bin, or users.dat written with Java
+    // serialization) into shards. The old file is kept with a .migrated suffix.
+    @SuppressWarnings("unchecked")
+    private Map<String, User> migrateToShards() {
+        File source = new File(SINGLE_USERS_FILE).exists() ? new File(SINGLE_USERS_FILE) : new File(LEGACY_USERS_FILE);
+        try {
+            Map<String, User> loadedUsers = new HashMap<>();
+            if (source.getName().endsWith(".bin")) {
+                for (User user : UserCodec.decode(Files.readAllBytes(source.toPath()))) {
+                    loadedUsers.put(user.getUserId(), user);
+                }
+            } else {
+                try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(source)))) {
+                    loadedUsers = (Map<String, User>) ois.readObject();
+                }
+            }
+
+            Set<Integer> allShards = new HashSet<>();
+            for (int shard = 0; shard < SHARD_COUNT; shard++) {
+                allShards.add(shard);
+            }
+            writeShards(loadedUsers, allShards);
+            if (!source.renameTo(new File(source.getPath() + ".migrated"))) {
+                System.err.println("Error renaming " + source.getPath() + " after migration");
+            }
+            System.out.println(GymUI.CYAN + "📂 Data migrated to sharded storage (" + loadedUsers.size() + " users)" + GymUI.RESET);
+            return loadedUsers;
         } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading users: " + e.getMessage());
+            System.err.println("Error migrating users: " + e.getMessage());
             return new HashMap<>();
         }
     }
 
+    // Rewrite the given shards, and their summary indexes, from the users map; returns
+    // the total size of all shard files
+    private long writeShards(Map<String, User> users, Set<Integer> shards) throws IOException {
+        if (!shards.isEmpty()) {
+            Map<Integer, List<User>> byShard = new HashMap<>();
+            for (int shard : shards) {
+                byShard.put(shard, new ArrayList<>());
+            }
+            if (users instanceof LazyUserMap) {
+                for (int shard : shards) {
+                    byShard.put(shard, ((LazyUserMap) users).loadShard(shard));
+                }
+            } else {
+                for (User user : users.values()) {
+                    List<User> shardUsers = byShard.get(shardOf(user.getUserId()));
+                    if (shardUsers != null) {
+                        shardUsers.add(user);
+                    }
+                }
+            }
+            for (Map.Entry<Integer, List<User>> entry : byShard.entrySet()) {
+                int shard = entry.getKey();
+                List<User> shardUsers = entry.getValue();
+                // Taken before encoding, so a change made meanwhile dirties the shard again
+                Map<String, Long> stamps = new HashMap<>();
+                for (User user : shardUsers) {
+                    stamps.put(user.getUserId(), user.getWriteStamp());
+                }
+                if (stamps.equals(writtenStamps.get(shard))) {
+                    continue;
+                }
+                int[] offsets = new int[shardUsers.size()];
+                byte[] data = UserCodec.encode(shardUsers, offsets);
+
+                Path target = shardFile(shard).toPath();
+                Path tmp = Paths.get(target + ".tmp");
+                Path indexTarget = shardIndexFile(shard).toPath();
+                Path indexTmp = Paths.get(indexTarget + ".tmp");
+                Files.write(tmp, data);
+                writeShardIndex(indexTmp, shardUsers, offsets, data.length);
+
+                LazyUserMap live = lazyUsers;
+                if (live == null) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Files.move(indexTmp, indexTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    writtenStamps.put(shard, stamps);
+                    continue;
+                }
+                // Lazy loads must not see the new file with the old record offsets
+                synchronized (live) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Files.move(indexTmp, indexTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    List<String> userIds = new ArrayList<>(shardUsers.size());
+                    for (User user : shardUsers) {
+                        userIds.add(user.getUserId());
+                    }
+                    live.shardWritten(shard, userIds, offsets);
+                }
+                writtenStamps.put(shard, stamps);
+            }
+        }
+
+        long total = 0;
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            total += shardFile(shard).length();
+        }
+        return total;
+    }
+
     // Save trainer-member assignments
     public boolean saveAssignments(Map<String, String> assignments) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(ASSIGNMENTS_FILE))) {
-            oos.writeObject(assignments);
+        try {
+            writeAtomically(ASSIGNMENTS_FILE, assignments);
             return true;
         } catch (IOException e) {
             System.err.println("Error saving assignments: " + e.getMessage());
@@ -62,7 +419,7 @@ public class DataManager {
     // Load trainer-member assignments
     @SuppressWarnings("unchecked")
     public Map<String, String> loadAssignments() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(ASSIGNMENTS_FILE))) {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(ASSIGNMENTS_FILE)))) {
             return (Map<String, String>) ois.readObject();
         } catch (FileNotFoundException e) {
             return new HashMap<>();
@@ -74,8 +431,8 @@ public class DataManager {
 
     // Save workout plans
     public boolean saveWorkouts(Map<String, List<String>> workouts) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(WORKOUTS_FILE))) {
-            oos.writeObject(workouts);
+        try {
+            writeAtomically(WORKOUTS_FILE, workouts);
             return true;
         } catch (IOException e) {
             System.err.println("Error saving workouts: " + e.getMessage());
@@ -86,7 +443,7 @@ public class DataManager {
     // Load workout plans
     @SuppressWarnings("unchecked")
     public Map<String, List<String>> loadWorkouts() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(WORKOUTS_FILE))) {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(WORKOUTS_FILE)))) {
             return (Map<String, List<String>>) ois.readObject();
         } catch (FileNotFoundException e) {
             return new HashMap<>();
@@ -98,40 +455,479 @@ public class DataManager {
 
     // Check if data files exist
     public boolean dataFilesExist() {
-        return new File(USERS_FILE).exists();
+        File[] shardFiles = new File(USERS_DIR).listFiles((dir, name) -> name.startsWith("shard_") && name.endsWith(".bin"));
+        return (shardFiles != null && shardFiles.length > 0) || new File(SINGLE_USERS_FILE).exists()
+                || new File(LEGACY_USERS_FILE).exists() || (journal != null && !journal.listSegments().isEmpty());
     }
 
-    // Backup data
-    public boolean backupData() {
+    // Journal access
+    public boolean isJournalingEnabled() { return journalingEnabled; }
+    public DataJournal getJournal() { return journal; }
+
+    // Apply changes recorded since the last snapshot
+    public int replayJournal(Map<String, User> users, Map<String, String> assignments) {
+        if (journal == null) {
+            return 0;
+        }
+        LazyUserMap lazy = users instanceof LazyUserMap ? (LazyUserMap) users : null;
+        if (lazy != null) {
+            // Replayed changes are only in memory until the next snapshot
+            lazy.setPinOnAccess(true);
+        }
+        Set<String> touchedUserIds = new HashSet<>();
+        int replayed = journal.replay(users, assignments, snapshotSegment, touchedUserIds);
+        // The next snapshot drops the replayed segments, so every shard they changed
+        // must be rewritten by it
+        for (String userId : touchedUserIds) {
+            dirtyShards.add(shardOf(userId));
+        }
+        if (touchedUserIds.contains("")) {
+            markAllDirty();
+        }
+        if (lazy != null) {
+            lazy.setPinOnAccess(false);
+            for (String userId : lazy.getPinnedIds()) {
+                dirtyShards.add(shardOf(userId));
+            }
+            if (lazy.consumeCleared()) {
+                markAllDirty();
+            }
+        }
+        if (replayed > 0) {
+            System.out.println(GymUI.CYAN + "📜 Replayed " + replayed + " journal records" + GymUI.RESET);
+        }
+        return replayed;
+    }
+
+    // Write the full state and start a fresh journal segment
+    public boolean checkpoint(Map<String, User> users, Map<String, String> assignments) {
+        markAllDirty();
+        if (journal == null) {
+            return saveUsers(users) && saveAssignments(assignments);
+        }
+        return writeSnapshot(users, assignments, sealForSnapshot());
+    }
+
+    // Seal the active journal segment and tag every shard changed so far with it.
+    // The caller must copy the users under the same lock that guards changes, so the
+    // copy reflects exactly the sealed segments.
+    public long sealForSnapshot() {
+        long sealed = journal.rotate();
+        for (int shard : takeDirtyShards()) {
+            pendingShards.merge(shard, sealed, Math::max);
+        }
+        return sealed;
+    }
+
+    // Write a snapshot containing every journal segment up to journalSegment, then drop
+    // those segments. Only shards changed in those segments are rewritten. Each file is
+    // written to a temporary and renamed into place, and the metadata goes last, so a
+    // crash leaves either the old or the new snapshot.
+    public synchronized boolean writeSnapshot(Map<String, User> users, Map<String, String> assignments,
+                                              long journalSegment) {
+        if (journalSegment <= snapshotSegment) {
+            return true; // A newer snapshot has already been written
+        }
         try {
-            String backupDir = DATA_DIR + "backup_" + System.currentTimeMillis() + "/";
-            File backup = new File(backupDir);
-            backup.mkdirs();
+            Set<Integer> shards = new HashSet<>();
+            for (Map.Entry<Integer, Long> entry : pendingShards.entrySet()) {
+                if (entry.getValue() <= journalSegment) {
+                    shards.add(entry.getKey());
+                }
+            }
+            long bytes = writeShards(users, shards) + writeAtomically(ASSIGNMENTS_FILE, assignments);
+            // Hot fields are not in the shards, so they must be durable before the
+            // journal segments that also hold them are dropped
+            if (hotFields != null && !hotFields.force()) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+
+            Properties meta = new Properties();
+            meta.setProperty("journalSegment", String.valueOf(journalSegment));
+            meta.setProperty("timelineStart", String.valueOf(timelineStart));
+            meta.setProperty("createdAt", String.valueOf(now));
+            meta.setProperty("bytes", String.valueOf(bytes));
+            meta.setProperty("users", String.valueOf(users.size()));
+            File tmp = new File(SNAPSHOT_META_FILE + ".tmp");
+            try (OutputStream os = new FileOutputStream(tmp)) {
+                meta.store(os, "Gym data snapshot");
+            }
+            Files.move(tmp.toPath(), Paths.get(SNAPSHOT_META_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            for (int shard : shards) {
+                // Keep shards changed again in a later segment while this one was written
+                pendingShards.computeIfPresent(shard, (key, segment) -> segment <= journalSegment ? null : segment);
+            }
+            snapshotSegment = journalSegment;
+            snapshotTime = now;
+            snapshotBytes = bytes;
+            if (journal != null) {
+                journal.archiveSegmentsThrough(journalSegment);
+                journal.pruneArchiveThrough(oldestBackupSegment());
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private long writeAtomically(String path, Object data) throws IOException {
+        File tmp = new File(path + ".tmp");
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            oos.writeObject(data);
+        }
+        long size = tmp.length();
+        Files.move(tmp.toPath(), Paths.get(path), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
 
-            // Copy all data files to backup directory
-            copyFile(USERS_FILE, backupDir + "users.dat");
-            copyFile(ASSIGNMENTS_FILE, backupDir + "assignments.dat");
-            copyFile(WORKOUTS_FILE, backupDir + "workouts.dat");
+    private void loadSnapshotMeta() {
+        File metaFile = new File(SNAPSHOT_META_FILE);
+        if (!metaFile.exists()) {
+            return;
+        }
+        try (InputStream is = new FileInputStream(metaFile)) {
+            Properties meta = new Properties();
+            meta.load(is);
+            snapshotSegment = Long.parseLong(meta.getProperty("journalSegment", "0"));
+            timelineStart = Long.parseLong(meta.getProperty("timelineStart", "0"));
+            snapshotTime = Long.parseLong(meta.getProperty("createdAt", "0"));
+            snapshotBytes = Long.parseLong(meta.getProperty("bytes", "0"));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading snapshot metadata: " + e.getMessage());
+        }
+    }
+
+    // Earlier versions kept a single journal.log next to users.dat
+    private void migrateLegacyJournal() {
+        File legacy = new File(LEGACY_JOURNAL_FILE);
+        if (legacy.exists() && !legacy.renameTo(journal.segmentFile(snapshotSegment + 1))) {
+            System.err.println("Error migrating journal.log into " + JOURNAL_DIR);
+        }
+    }
+
+    public long getSnapshotTime() { return snapshotTime; }
+    public long getSnapshotBytes() { return snapshotBytes; }
+
+    public HotFieldStore getHotFields() { return hotFields; }
+    public boolean isLazyLoading() { return lazyUsers != null; }
+
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+        if (hotFields != null) {
+            hotFields.close();
+        }
+    }
+
+    // Backup data. Files go into the content-addressed store under gym_data/backups/,
+    // so only chunks that changed since an earlier backup are copied.
+    public boolean backupData() {
+        File hotFieldsCopy = new File(HOT_FIELDS_FILE + ".backup");
+        try {
+            Map<String, File> files = new LinkedHashMap<>();
+            Map<String, Long> lengthLimits = new HashMap<>();
+            BackupManager.Result result;
+            // Holding this lock keeps the compactor from replacing the snapshot or dropping
+            // journal segments midway. Changes carry on: they are appended to the journal,
+            // and only the part of the active segment written before the backup is included.
+            synchronized (this) {
+                files.put("snapshot.properties", new File(SNAPSHOT_META_FILE));
+                for (int shard = 0; shard < SHARD_COUNT; shard++) {
+                    files.put("users/" + shardFile(shard).getName(), shardFile(shard));
+                    files.put("users/" + shardIndexFile(shard).getName(), shardIndexFile(shard));
+                }
+                files.put("assignments.dat", new File(ASSIGNMENTS_FILE));
+                files.put("workouts.dat", new File(WORKOUTS_FILE));
+                if (hotFields != null) {
+                    hotFields.copyTo(hotFieldsCopy);
+                    files.put("hotfields.dat", hotFieldsCopy);
+                }
+                if (journal != null) {
+                    journal.sync();
+                    long activeSegment = journal.getCurrentSegment();
+                    for (long segment : journal.listSegments()) {
+                        File segmentFile = journal.segmentFile(segment);
+                        String name = "journal/" + segmentFile.getName();
+                        files.put(name, segmentFile);
+                        if (segment == activeSegment) {
+                            lengthLimits.put(name, segmentFile.length());
+                        }
+                    }
+                }
+                Map<String, String> info = new HashMap<>();
+                info.put("journalSegment", String.valueOf(snapshotSegment));
+                result = backupManager.createBackup(files, lengthLimits, info);
+            }
 
             System.out.println(GymUI.GREEN + "✅ Backup created successfully!" + GymUI.RESET);
+            System.out.println(GymUI.GRAY + "   " + result.getName() + ": " + result.getFiles() + " files, " +
+                    result.getTotalBytes() / 1024 + " KB (" + result.getNewBytes() / 1024 + " KB new) in " +
+                    result.getElapsedMillis() + " ms" + GymUI.RESET);
             return true;
         } catch (Exception e) {
             System.err.println("Error creating backup: " + e.getMessage());
             return false;
+        } finally {
+            hotFieldsCopy.delete();
+        }
+    }
+
+    public BackupManager getBackupManager() { return backupManager; }
+
+    // Rolling a backup forward needs the journal segments after its snapshot, so archived
+    // segments up to the oldest backup's snapshot are the only ones safe to drop
+    private long oldestBackupSegment() {
+        long oldest = Long.MAX_VALUE;
+        try {
+            for (String backup : backupManager.listBackups()) {
+                String segment = backupManager.getInfo(backup, "journalSegment");
+                oldest = Math.min(oldest, segment != null ? Long.parseLong(segment) : 0);
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading backup manifests: " + e.getMessage());
+            return 0;
+        }
+        return oldest;
+    }
+
+    // Replace the data files with a backup. Files are rebuilt and every shard decoded in a
+    // staging directory first, in parallel, so a damaged backup never replaces good data.
+    // With a point in time, journal records up to it are added from later backups and the
+    // current journal; they are replayed on the next load. The replaced files are kept in
+    // gym_data/pre_restore_<millis>/. Call close() first.
+    public synchronized boolean restoreBackup(String backupName, Long pointInTime) {
+        long start = System.nanoTime();
+        File staging = new File(DATA_DIR + "restore_tmp");
+        try {
+            deleteRecursively(staging);
+            int files = backupManager.restoreFiles(backupName, staging);
+
+            File[] stagedShards = new File(staging, "users").listFiles((dir, name) -> name.startsWith("shard_") && name.endsWith(".bin"));
+            int users = 0;
+            if (stagedShards != null) {
+                try {
+                    users = Arrays.stream(stagedShards).parallel().mapToInt(shard -> readShard(shard).size()).sum();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+
+            // The restored data starts a new timeline: its segments, the rolled forward ones
+            // included, are numbered above every segment the replaced data or a backup holds
+            long newTimeline = highestKnownSegment(staging) + 1;
+            int records = pointInTime != null ? rollForward(backupName, staging, pointInTime) : 0;
+            File stagedJournal = new File(staging, "journal");
+            File stagedMeta = new File(staging, "snapshot.properties");
+            Properties meta = readProperties(stagedMeta);
+            renumberSegments(stagedJournal, Long.parseLong(meta.getProperty("journalSegment", "0")), newTimeline);
+            meta.setProperty("timelineStart", String.valueOf(newTimeline));
+            try (OutputStream os = new FileOutputStream(stagedMeta)) {
+                meta.store(os, "Gym data snapshot");
+            }
+
+            // The archive holds history for every backup, so it carries over, together with
+            // the replaced timeline's live segments in case a later restore goes back to it
+            File stagedArchive = new File(stagedJournal, "archive");
+            File archive = new File(JOURNAL_DIR, "archive");
+            stagedJournal.mkdirs();
+            if (archive.exists()) {
+                Files.move(archive.toPath(), stagedArchive.toPath());
+            }
+            stagedArchive.mkdirs();
+            File[] liveSegments = new File(JOURNAL_DIR).listFiles((dir, name) -> DataJournal.segmentNumber(name) >= 0);
+            if (liveSegments != null) {
+                for (File segment : liveSegments) {
+                    Files.copy(segment.toPath(), new File(stagedArchive, segment.getName()).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.write(new File(stagedArchive, TIMELINES_FILE).toPath(), (newTimeline + System.lineSeparator()).getBytes(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+            File aside = new File(DATA_DIR + "pre_restore_" + System.currentTimeMillis());
+            aside.mkdirs();
+            File[] current = new File(DATA_DIR).listFiles();
+            if (current != null) {
+                for (File file : current) {
+                    String name = file.getName();
+                    if (!name.equals("backups") && !name.equals(staging.getName()) && !name.startsWith("backup_")
+                            && !name.startsWith("pre_restore_")) {
+                        Files.move(file.toPath(), new File(aside, name).toPath());
+                    }
+                }
+            }
+            File[] restored = staging.listFiles();
+            if (restored != null) {
+                for (File file : restored) {
+                    Files.move(file.toPath(), new File(DATA_DIR, file.getName()).toPath());
+                }
+            }
+            staging.delete();
+
+            System.out.println(GymUI.GREEN + "✅ Restore completed!" + GymUI.RESET);
+            System.out.println(GymUI.GRAY + "   " + backupName + ": " + files + " files, " + users + " users" +
+                    (pointInTime != null ? ", " + records + " journal records to roll forward" : "") + " in " +
+                    (System.nanoTime() - start) / 1_000_000 + " ms" + GymUI.RESET);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error restoring backup: " + e.getMessage());
+            deleteRecursively(staging);
+            return false;
+        }
+    }
+
+    // Put the journal records written after the backup, up to pointInTime, into the
+    // staged journal. Only segments of the backup's own timeline are used, up to where a
+    // restore replaced it. Each segment is taken from its longest copy: a newer backup's,
+    // or the live journal's or archive's.
+    private int rollForward(String backupName, File staging, long pointInTime) throws IOException {
+        if (pointInTime < backupManager.getCreatedAt(backupName)) {
+            throw new IOException("the backup was taken after the requested point in time");
+        }
+        Properties meta = readProperties(new File(staging, "snapshot.properties"));
+        long coveredSegment = Long.parseLong(meta.getProperty("journalSegment", "0"));
+        long backupTimeline = Long.parseLong(meta.getProperty("timelineStart", "0"));
+        long first = Math.max(coveredSegment + 1, backupTimeline);
+        long end = Long.MAX_VALUE;
+        for (long start : readTimelineStarts()) {
+            if (start > backupTimeline) {
+                end = Math.min(end, start);
+            }
+        }
+
+        File extracted = new File(DATA_DIR + "restore_segments");
+        deleteRecursively(extracted);
+        try {
+            Map<Long, File> longest = new TreeMap<>();
+            File stagedJournal = new File(staging, "journal");
+            addSegmentCandidates(stagedJournal.listFiles(), first, end, longest);
+            for (String later : backupManager.listBackups()) {
+                if (backupManager.getCreatedAt(later) <= backupManager.getCreatedAt(backupName)) {
+                    continue;
+                }
+                for (Map.Entry<String, Long> file : backupManager.listFiles(later).entrySet()) {
+                    String name = file.getKey();
+                    long segment = name.startsWith("journal/") ? DataJournal.segmentNumber(name.substring(8)) : -1;
+                    File best = longest.get(segment);
+                    if (segment >= first && segment < end && (best == null || best.length() < file.getValue())) {
+                        File copy = new File(extracted, later + "/" + name);
+                        backupManager.restoreFile(later, name, copy);
+                        longest.put(segment, copy);
+                    }
+                }
+            }
+            addSegmentCandidates(new File(JOURNAL_DIR).listFiles(), first, end, longest);
+            addSegmentCandidates(new File(JOURNAL_DIR, "archive").listFiles(), first, end, longest);
+
+            stagedJournal.mkdirs();
+            int records = 0;
+            for (Map.Entry<Long, File> segment : longest.entrySet()) {
+                File target = new File(stagedJournal, segment.getValue().getName());
+                File tmp = new File(target.getPath() + ".tmp");
+                records += DataJournal.copyRecordsUntil(segment.getValue(), tmp, pointInTime);
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return records;
+        } finally {
+            deleteRecursively(extracted);
+        }
+    }
+
+    private static void addSegmentCandidates(File[] files, long first, long end, Map<Long, File> longest) {
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            long segment = DataJournal.segmentNumber(file.getName());
+            File best = longest.get(segment);
+            if (segment >= first && segment < end && (best == null || best.length() < file.length())) {
+                longest.put(segment, file);
+            }
         }
     }
 
-    private void copyFile(String source, String destination) throws IOException {
-        File sourceFile = new File(source);
-        if (sourceFile.exists()) {
-            try (FileInputStream fis = new FileInputStream(sourceFile);
-                 FileOutputStream fos = new FileOutputStream(destination)) {
-                byte[] buffer = new byte[1024];
-                int length;
-                while ((length = fis.read(buffer)) > 0) {
-                    fos.write(buffer, 0, length);
+    // The first segment of every timeline started by a restore, oldest first
+    private static List<Long> readTimelineStarts() throws IOException {
+        List<Long> starts = new ArrayList<>();
+        File file = new File(JOURNAL_DIR + "archive", TIMELINES_FILE);
+        if (file.exists()) {
+            for (String line : Files.readAllLines(file.toPath())) {
+                if (!line.isBlank()) {
+                    starts.add(Long.parseLong(line.trim()));
+                }
+            }
+        }
+        return starts;
+    }
+
+    // The highest segment number used so far: in the live journal, its archive, the
+    // staged restore, any backup, or reserved by a timeline that has not written yet
+    private long highestKnownSegment(File staging) throws IOException {
+        long highest = Math.max(snapshotSegment, timelineStart);
+        if (journal != null) {
+            highest = Math.max(highest, journal.getCurrentSegment());
+        }
+        for (File dir : new File[] { new File(JOURNAL_DIR), new File(JOURNAL_DIR, "archive"), new File(staging, "journal") }) {
+            String[] names = dir.list();
+            if (names != null) {
+                for (String name : names) {
+                    highest = Math.max(highest, DataJournal.segmentNumber(name));
+                }
+            }
+        }
+        for (String backup : backupManager.listBackups()) {
+            for (String name : backupManager.listFiles(backup).keySet()) {
+                if (name.startsWith("journal/")) {
+                    highest = Math.max(highest, DataJournal.segmentNumber(name.substring(8)));
                 }
             }
         }
+        for (long start : readTimelineStarts()) {
+            highest = Math.max(highest, start);
+        }
+        return highest;
+    }
+
+    // Drop the staged segments the snapshot already covers and give the rest consecutive
+    // numbers from the new timeline's first one on
+    private static void renumberSegments(File journalDir, long coveredSegment, long firstSegment) throws IOException {
+        File[] files = journalDir.listFiles((dir, name) -> DataJournal.segmentNumber(name) >= 0);
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(file -> DataJournal.segmentNumber(file.getName())));
+        long next = firstSegment;
+        for (File file : files) {
+            if (DataJournal.segmentNumber(file.getName()) <= coveredSegment) {
+                Files.delete(file.toPath());
+            } else {
+                Files.move(file.toPath(), new File(journalDir, DataJournal.segmentFileName(next++)).toPath());
+            }
+        }
+    }
+
+    private static Properties readProperties(File file) throws IOException {
+        Properties properties = new Properties();
+        if (file.exists()) {
+            try (InputStream is = new FileInputStream(file)) {
+                properties.load(is);
+            }
+        }
+        return properties;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
     }
-}
\ No newline at end of file
+}
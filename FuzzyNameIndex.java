@@ -0,0 +1,214 @@
+// FuzzyNameIndex.java - BK-tree over user names for typo-tolerant lookups
+import java.util.*;
+
+public class FuzzyNameIndex {
+    // A BK-tree keyed by normalized name: each child hangs off its parent at their edit
+    // distance, so by the triangle inequality a query within d of a node's children only
+    // needs to visit those at distance (q - d)..(q + d). The metric is Damerau-Levenshtein
+    // with unrestricted transpositions, which keeps "jonh smtih" 2 edits from "john smith"
+    // and is a true metric, so no match is pruned. A user is indexed under its full name
+    // and each word of it. Removed users leave empty nodes behind; the tree is rebuilt
+    // once those outnumber the live ones.
+
+    private static class Node {
+        final String key;
+        final Set<String> userIds = new HashSet<>();
+        final Map<Integer, Node> children = new HashMap<>();
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    // One search result
+    public static class Match {
+        final String userId;
+        final int distance;
+
+        Match(String userId, int distance) {
+            this.userId = userId;
+            this.distance = distance;
+        }
+
+        public String getUserId() { return userId; }
+        public int getDistance() { return distance; }
+    }
+
+    private Node root;
+    private final Map<String, List<String>> keysByUser = new HashMap<>();
+    private int nodeCount;
+    private int liveKeys; // nodes with at least one user
+
+    // Edits allowed for a query: one per four characters, between 1 and 3
+    public static int defaultMaxDistance(String query) {
+        return Math.max(1, Math.min(3, PrefixIndex.normalize(query).length() / 4));
+    }
+
+    public synchronized void put(String userId, String name) {
+        List<String> keys = keysFor(name);
+        if (keys.equals(keysByUser.get(userId))) {
+            return;
+        }
+        remove(userId);
+        for (String key : keys) {
+            Node node = insert(key);
+            if (node.userIds.add(userId) && node.userIds.size() == 1) {
+                liveKeys++;
+            }
+        }
+        keysByUser.put(userId, keys);
+    }
+
+    public synchronized void remove(String userId) {
+        List<String> keys = keysByUser.remove(userId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Node node = find(key);
+            if (node != null && node.userIds.remove(userId) && node.userIds.isEmpty()) {
+                liveKeys--;
+            }
+        }
+        if (nodeCount - liveKeys > liveKeys) {
+            rebuild();
+        }
+    }
+
+    public synchronized void clear() {
+        root = null;
+        keysByUser.clear();
+        nodeCount = 0;
+        liveKeys = 0;
+    }
+
+    // Users with a name, or a word of one, within maxDistance edits of the query;
+    // closest first, each user once at its best distance
+    public synchronized List<Match> search(String query, int maxDistance) {
+        String key = PrefixIndex.normalize(query);
+        Map<String, Integer> best = new HashMap<>();
+        if (root != null && !key.isEmpty()) {
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                int distance = distance(key, node.key);
+                if (distance <= maxDistance) {
+                    for (String userId : node.userIds) {
+                        best.merge(userId, distance, Math::min);
+                    }
+                }
+                for (int d = Math.max(1, distance - maxDistance); d <= distance + maxDistance; d++) {
+                    Node child = node.children.get(d);
+                    if (child != null) {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : best.entrySet()) {
+            matches.add(new Match(entry.getKey(), entry.getValue()));
+        }
+        matches.sort(Comparator.comparingInt(Match::getDistance).thenComparing(Match::getUserId));
+        return matches;
+    }
+
+    private Node insert(String key) {
+        if (root == null) {
+            root = new Node(key);
+            nodeCount++;
+            return root;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(key, node.key);
+            if (distance == 0) {
+                return node;
+            }
+            Node child = node.children.get(distance);
+            if (child == null) {
+                child = new Node(key);
+                node.children.put(distance, child);
+                nodeCount++;
+                return child;
+            }
+            node = child;
+        }
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        while (node != null) {
+            int distance = distance(key, node.key);
+            if (distance == 0) {
+                return node;
+            }
+            node = node.children.get(distance);
+        }
+        return null;
+    }
+
+    private void rebuild() {
+        Map<String, List<String>> users = new HashMap<>(keysByUser);
+        clear();
+        for (Map.Entry<String, List<String>> entry : users.entrySet()) {
+            for (String key : entry.getValue()) {
+                Node node = insert(key);
+                if (node.userIds.add(entry.getKey()) && node.userIds.size() == 1) {
+                    liveKeys++;
+                }
+            }
+            keysByUser.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static List<String> keysFor(String name) {
+        List<String> keys = new ArrayList<>();
+        String normalized = PrefixIndex.normalize(name);
+        if (!normalized.isEmpty()) {
+            keys.add(normalized);
+            for (String word : normalized.split(" ")) {
+                if (!keys.contains(word)) {
+                    keys.add(word);
+                }
+            }
+        }
+        return keys;
+    }
+
+    // Damerau-Levenshtein distance with adjacent transpositions (Lowrance-Wagner)
+    static int distance(String a, String b) {
+        int n = a.length();
+        int m = b.length();
+        int infinity = n + m;
+        int[][] d = new int[n + 2][m + 2];
+        d[0][0] = infinity;
+        for (int i = 0; i <= n; i++) {
+            d[i + 1][0] = infinity;
+            d[i + 1][1] = i;
+        }
+        for (int j = 0; j <= m; j++) {
+            d[0][j + 1] = infinity;
+            d[1][j + 1] = j;
+        }
+        Map<Character, Integer> lastRow = new HashMap<>();
+        for (int i = 1; i <= n; i++) {
+            int lastMatchColumn = 0;
+            for (int j = 1; j <= m; j++) {
+                int i1 = lastRow.getOrDefault(b.charAt(j - 1), 0);
+                int j1 = lastMatchColumn;
+                int cost = 1;
+                if (a.charAt(i - 1) == b.charAt(j - 1)) {
+                    cost = 0;
+                    lastMatchColumn = j;
+                }
+                d[i + 1][j + 1] = Math.min(Math.min(d[i][j] + cost, d[i + 1][j] + 1),
+                        Math.min(d[i][j + 1] + 1, d[i1][j1] + (i - i1 - 1) + 1 + (j - j1 - 1)));
+            }
+            lastRow.put(a.charAt(i - 1), i);
+        }
+        return d[n + 1][m + 1];
+    }
+}
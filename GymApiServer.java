@@ -0,0 +1,397 @@
+// GymApiServer.java - Embedded HTTP/JSON API over UserManager for kiosks, front desk and apps
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class GymApiServer {
+    // Endpoints (JSON in and out; all but login need "Authorization: Bearer <token>"):
+    //   POST /api/login                      {"userId", "password"} -> {"token", "userId", "role", "name"}
+    //   POST /api/logout
+    //   GET  /api/members/{id}               member details
+    //   POST /api/members/{id}/checkin       mark today's attendance
+    //   POST /api/members/{id}/payments      {"amount"} -> {"totalPayments"}
+    //   GET  /api/search?q=term              staff only; up to 20 users
+    // Members may only read and act on their own record; trainers and admins on any.
+    // Each request runs on its own virtual thread where the JDK has them (21+), and on a
+    // cached pool otherwise; UserManager does its own locking, so handlers just call it.
+    // Run with -Dsun.net.httpserver.nodelay=true (GymManagementSystemMain sets it): headers
+    // and body go out as separate writes, and without it each small response waits on the
+    // client's delayed ACK, about 40ms. The JDK reads it once, when the first server starts.
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+    private static final int SEARCH_LIMIT = 20;
+
+    private final UserManager userManager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // An error response: status code plus message
+    private static class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public GymApiServer(UserManager userManager, int port) throws IOException {
+        this.userManager = userManager;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor if this JDK has it
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println(GymUI.CYAN + "🌐 API listening on port " + getPort() + GymUI.RESET);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stop accepting requests and give running ones a second to finish. API sessions stay
+    // with UserManager and expire when idle like any other.
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            body = route(exchange);
+        } catch (ApiException e) {
+            status = e.status;
+            body = "{\"error\":" + quote(e.getMessage()) + "}";
+        } catch (Exception e) {
+            System.err.println("Error handling API request: " + e.getMessage());
+            status = 500;
+            body = "{\"error\":\"internal error\"}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String route(HttpExchange exchange) throws IOException, ApiException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+
+        if (path.length == 1 && path[0].equals("login")) {
+            requireMethod(method, "POST");
+            return login(readObject(exchange));
+        }
+
+        UserSession session = authenticate(exchange);
+        if (path.length == 1 && path[0].equals("logout")) {
+            requireMethod(method, "POST");
+            userManager.logout(session);
+            return "{\"loggedOut\":true}";
+        }
+        if (path.length == 1 && path[0].equals("search")) {
+            requireMethod(method, "GET");
+            requireStaff(session);
+            return search(queryParameter(exchange, "q"));
+        }
+        if (path.length >= 2 && path[0].equals("members")) {
+            String memberId = path[1];
+            requireAccess(session, memberId);
+            if (path.length == 2) {
+                requireMethod(method, "GET");
+                return memberJson(findMember(memberId));
+            }
+            if (path.length == 3 && path[2].equals("checkin")) {
+                requireMethod(method, "POST");
+                findMember(memberId);
+                if (!userManager.markAttendance(memberId)) {
+                    throw new ApiException(409, "check-in failed");
+                }
+                return "{\"checkedIn\":true}";
+            }
+            if (path.length == 3 && path[2].equals("payments")) {
+                requireMethod(method, "POST");
+                double amount = readAmount(readObject(exchange).get("amount"));
+                findMember(memberId);
+                double total = userManager.recordPaymentTotal(memberId, amount);
+                if (total < 0) {
+                    throw new ApiException(409, "payment failed");
+                }
+                return "{\"totalPayments\":" + total + "}";
+            }
+        }
+        throw new ApiException(404, "no such endpoint");
+    }
+
+    private String login(Map<String, String> request) throws ApiException {
+        UserSession session = userManager.login(request.get("userId"), request.get("password"));
+        if (session == null) {
+            throw new ApiException(401, "invalid credentials or inactive account");
+        }
+        User user = session.getUser();
+        return "{\"token\":" + quote(session.getToken()) + ",\"userId\":" + quote(user.getUserId()) +
+                ",\"role\":" + quote(user.getRole()) + ",\"name\":" + quote(user.getName()) + "}";
+    }
+
+    private String search(String term) throws ApiException {
+        if (term == null || term.trim().isEmpty()) {
+            throw new ApiException(400, "missing q");
+        }
+        List<User> results = userManager.searchUsers(term);
+        if (results.isEmpty()) {
+            results = userManager.fuzzySearchUsers(term);
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < results.size() && i < SEARCH_LIMIT; i++) {
+            User user = results.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"userId\":").append(quote(user.getUserId()))
+                    .append(",\"role\":").append(quote(user.getRole()))
+                    .append(",\"name\":").append(quote(user.getName()))
+                    .append(",\"active\":").append(user.isActive()).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private static String memberJson(Member member) {
+        return "{\"userId\":" + quote(member.getUserId()) +
+                ",\"name\":" + quote(member.getName()) +
+                ",\"email\":" + quote(member.getEmail()) +
+                ",\"phone\":" + quote(member.getPhoneNumber()) +
+                ",\"membershipType\":" + quote(member.getMembershipType()) +
+                ",\"joinDate\":" + quote(member.getJoinDate()) +
+                ",\"membershipExpiry\":" + quote(member.getMembershipExpiry()) +
+                ",\"expired\":" + member.isMembershipExpired() +
+                ",\"active\":" + member.isActive() +
+                ",\"trainerId\":" + quote(member.getAssignedTrainerId()) +
+                ",\"totalPayments\":" + member.getTotalPayments() +
+                ",\"attendanceDays\":" + member.getAttendanceHistory().size() + "}";
+    }
+
+    private Member findMember(String memberId) throws ApiException {
+        Member member = userManager.getMemberById(memberId);
+        if (member == null) {
+            throw new ApiException(404, "member not found");
+        }
+        return member;
+    }
+
+    private UserSession authenticate(HttpExchange exchange) throws ApiException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        UserSession session = null;
+        if (header != null && header.startsWith("Bearer ")) {
+            session = userManager.getSession(header.substring("Bearer ".length()).trim());
+        }
+        if (session == null) {
+            throw new ApiException(401, "not logged in");
+        }
+        return session;
+    }
+
+    private static void requireStaff(UserSession session) throws ApiException {
+        if (session.getUser() instanceof Member) {
+            throw new ApiException(403, "staff only");
+        }
+    }
+
+    private static void requireAccess(UserSession session, String memberId) throws ApiException {
+        if (session.getUser() instanceof Member && !session.getUserId().equals(memberId)) {
+            throw new ApiException(403, "members may only access their own record");
+        }
+    }
+
+    private static void requireMethod(String method, String expected) throws ApiException {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, "use " + expected);
+        }
+    }
+
+    private static double readAmount(String value) throws ApiException {
+        try {
+            double amount = Double.parseDouble(value);
+            if (amount <= 0 || Double.isNaN(amount) || Double.isInfinite(amount)) {
+                throw new ApiException(400, "amount must be positive");
+            }
+            return amount;
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new ApiException(400, "missing or invalid amount");
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                    return URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return null;
+    }
+
+    // A flat JSON object of string, number or boolean values; numbers and booleans are
+    // returned as their text. Enough for the small request bodies this API takes.
+    private static Map<String, String> readObject(HttpExchange exchange) throws IOException, ApiException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "request body too large");
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8).trim();
+        Map<String, String> values = new HashMap<>();
+        int[] position = {0};
+        try {
+            expect(text, position, '{');
+            skipSpace(text, position);
+            if (text.charAt(position[0]) == '}') {
+                return values;
+            }
+            while (true) {
+                skipSpace(text, position);
+                String key = readString(text, position);
+                expect(text, position, ':');
+                skipSpace(text, position);
+                String value;
+                if (text.charAt(position[0]) == '"') {
+                    value = readString(text, position);
+                } else {
+                    int start = position[0];
+                    while (position[0] < text.length() && ",} \t\r\n".indexOf(text.charAt(position[0])) < 0) {
+                        position[0]++;
+                    }
+                    value = text.substring(start, position[0]);
+                    if (value.equals("null")) {
+                        value = null;
+                    }
+                }
+                values.put(key, value);
+                skipSpace(text, position);
+                char next = text.charAt(position[0]++);
+                if (next == '}') {
+                    return values;
+                }
+                if (next != ',') {
+                    throw new ApiException(400, "malformed JSON");
+                }
+            }
+        } catch (StringIndexOutOfBoundsException e) {
+            throw new ApiException(400, "malformed JSON");
+        }
+    }
+
+    private static void skipSpace(String text, int[] position) {
+        while (position[0] < text.length() && Character.isWhitespace(text.charAt(position[0]))) {
+            position[0]++;
+        }
+    }
+
+    private static void expect(String text, int[] position, char c) throws ApiException {
+        skipSpace(text, position);
+        if (text.charAt(position[0]++) != c) {
+            throw new ApiException(400, "malformed JSON");
+        }
+    }
+
+    private static String readString(String text, int[] position) throws ApiException {
+        expect(text, position, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = text.charAt(position[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\') {
+                char escaped = text.charAt(position[0]++);
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/': value.append(escaped); break;
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (position[0] + 4 > text.length()) {
+                            throw new ApiException(400, "malformed JSON");
+                        }
+                        String hex = text.substring(position[0], position[0] + 4);
+                        position[0] += 4;
+                        // parseInt would also take a sign
+                        if (hex.charAt(0) == '+' || hex.charAt(0) == '-') {
+                            throw new ApiException(400, "malformed JSON");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(hex, 16));
+                        } catch (NumberFormatException e) {
+                            throw new ApiException(400, "malformed JSON");
+                        }
+                        break;
+                    default: throw new ApiException(400, "malformed JSON");
+                }
+            } else {
+                value.append(c);
+            }
+        }
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
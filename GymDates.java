@@ -0,0 +1,70 @@
+// GymDates.java - Epoch-based date values and their display formats
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+public final class GymDates {
+    // Dates are kept as epoch days and timestamps as local epoch seconds: the wall-clock
+    // time read as if it were UTC, so a stored value formats back to exactly the text the
+    // user saw, whatever the time zone. Strings are only made when something is displayed.
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    public static final long NEVER = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int SECONDS_PER_DAY = 86400;
+
+    private GymDates() {
+    }
+
+    public static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    public static long now() {
+        return LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // The day a timestamp falls on, or NO_DATE for NEVER
+    public static int dayOf(long timestamp) {
+        return timestamp == NEVER ? NO_DATE : (int) Math.floorDiv(timestamp, SECONDS_PER_DAY);
+    }
+
+    // "yyyy-MM-dd", or null for NO_DATE
+    public static String formatDate(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day).toString();
+    }
+
+    // "yyyy-MM-dd HH:mm:ss", or null for NEVER
+    public static String formatDateTime(long timestamp) {
+        return timestamp == NEVER ? null : LocalDateTime.ofEpochSecond(timestamp, 0, ZoneOffset.UTC).format(DATE_TIME);
+    }
+
+    // Epoch day of "yyyy-MM-dd", or of the date part of "yyyy-MM-dd HH:mm:ss";
+    // NO_DATE if missing or unreadable
+    public static int parseDate(String text) {
+        if (text == null || text.length() < 10) {
+            return NO_DATE;
+        }
+        try {
+            return (int) LocalDate.parse(text.substring(0, 10)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return NO_DATE;
+        }
+    }
+
+    // Timestamp of "yyyy-MM-dd HH:mm:ss" (a bare date is taken as midnight);
+    // NEVER if missing or unreadable
+    public static long parseDateTime(String text) {
+        if (text == null) {
+            return NEVER;
+        }
+        try {
+            return LocalDateTime.parse(text, DATE_TIME).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            int day = parseDate(text);
+            return day == NO_DATE ? NEVER : (long) day * SECONDS_PER_DAY;
+        }
+    }
+}
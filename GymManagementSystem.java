@@ -1,10 +1,19 @@
 // GymManagementSystem.java - Enhanced Core System Class
 import java.util.*;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 public class GymManagementSystem {
+    // How many type-ahead matches the member and trainer searches show
+    private static final int QUICK_MATCH_LIMIT = 10;
+
     private UserManager userManager;
     private Scanner scanner;
+    private UserSession session;
 
     public GymManagementSystem() {
         this.userManager = new UserManager();
@@ -13,10 +22,13 @@ public class GymManagementSystem {
 
     public UserManager getUserManager() { return userManager; }
     public Scanner getScanner() { return scanner; }
+    public UserSession getSession() { return session; }
 
-    public void handleUserSession() {
-        User currentUser = userManager.getCurrentUser();
-        if (currentUser == null) return;
+    // This terminal's login; other terminals or clients have their own
+    public void handleUserSession(UserSession session) {
+        if (session == null || !session.isOpen()) return;
+        this.session = session;
+        User currentUser = session.getUser();
 
         GymUI.clearScreen();
         currentUser.displayDashboard();
@@ -172,19 +184,26 @@ public class GymManagementSystem {
         GymUI.printHeader("SEARCH MEMBERS", GymUI.CYAN);
 
         String searchTerm = GymUI.getValidInput(scanner, "Enter search term (name/ID/email): ", "Search term cannot be empty!");
-        List<User> userResults = userManager.searchUsers(searchTerm);
-        List<Member> results = new ArrayList<>();
-
-        for (User user : userResults) {
-            if (user instanceof Member) {
-                results.add((Member) user);
+        // Names and IDs starting with the term come first, most recently active first;
+        // anything else falls back to a full search
+        List<Member> results = userManager.completeMembers(searchTerm, QUICK_MATCH_LIMIT);
+        boolean quickMatches = !results.isEmpty();
+        if (!quickMatches) {
+            List<User> userResults = userManager.searchUsers(searchTerm);
+            if (userResults.isEmpty()) {
+                userResults = userManager.fuzzySearchUsers(searchTerm);
+            }
+            for (User user : userResults) {
+                if (user instanceof Member) {
+                    results.add((Member) user);
+                }
             }
         }
 
         if (results.isEmpty()) {
             GymUI.showWarningMessage("No members found.");
         } else {
-            System.out.println(GymUI.BOLD + "\nSearch Results (" + results.size() + "):" + GymUI.RESET);
+            System.out.println(GymUI.BOLD + (quickMatches ? "\nTop Matches (" : "\nSearch Results (") + results.size() + "):" + GymUI.RESET);
             for (Member member : results) {
                 member.displayMemberInfo();
                 System.out.println();
@@ -198,19 +217,26 @@ public class GymManagementSystem {
         GymUI.printHeader("SEARCH TRAINERS", GymUI.CYAN);
 
         String searchTerm = GymUI.getValidInput(scanner, "Enter search term (name/ID/specialization): ", "Search term cannot be empty!");
-        List<User> userResults = userManager.searchUsers(searchTerm);
-        List<Trainer> results = new ArrayList<>();
-
-        for (User user : userResults) {
-            if (user instanceof Trainer) {
-                results.add((Trainer) user);
+        // Names and IDs starting with the term come first, most recently active first;
+        // anything else falls back to a full search
+        List<Trainer> results = userManager.completeTrainers(searchTerm, QUICK_MATCH_LIMIT);
+        boolean quickMatches = !results.isEmpty();
+        if (!quickMatches) {
+            List<User> userResults = userManager.searchUsers(searchTerm);
+            if (userResults.isEmpty()) {
+                userResults = userManager.fuzzySearchUsers(searchTerm);
+            }
+            for (User user : userResults) {
+                if (user instanceof Trainer) {
+                    results.add((Trainer) user);
+                }
             }
         }
 
         if (results.isEmpty()) {
             GymUI.showWarningMessage("No trainers found.");
         } else {
-            System.out.println(GymUI.BOLD + "\nSearch Results (" + results.size() + "):" + GymUI.RESET);
+            System.out.println(GymUI.BOLD + (quickMatches ? "\nTop Matches (" : "\nSearch Results (") + results.size() + "):" + GymUI.RESET);
             for (Trainer trainer : results) {
                 trainer.displayTrainerInfo();
                 System.out.println();
@@ -295,6 +321,8 @@ public class GymManagementSystem {
             GymUI.pauseForInput(scanner);
             return;
         }
+        // Another admin may edit the member while this one decides
+        long version = userManager.getVersion(member.getUserId());
 
         GymUI.clearScreen();
         member.displayMemberInfo();
@@ -310,20 +338,20 @@ public class GymManagementSystem {
         switch (choice) {
             case 1:
                 boolean newStatus = !member.isActive();
-                if (userManager.updateUserStatus(memberId, newStatus)) {
+                if (userManager.updateUserStatus(memberId, newStatus, version)) {
                     GymUI.showSuccessMessage("Status updated to: " + (newStatus ? "Active" : "Inactive"));
+                } else {
+                    showStaleEditMessage();
                 }
                 break;
             case 2:
-                String newEmail = GymUI.getValidInput(scanner, "New email: ", "Email cannot be empty!");
-                userManager.updateUserEmail(memberId, newEmail);
+                updateEmail(memberId, version);
                 break;
             case 3:
-                String newPassword = GymUI.getValidInput(scanner, "New password: ", "Password cannot be empty!");
-                userManager.updateUserPassword(memberId, newPassword);
+                updatePassword(memberId, version);
                 break;
             case 4:
-                renewMembership(member);
+                renewMembership(member, version);
                 break;
         }
         GymUI.pauseForInput(scanner);
@@ -338,6 +366,7 @@ public class GymManagementSystem {
             GymUI.pauseForInput(scanner);
             return;
         }
+        long version = userManager.getVersion(trainer.getUserId());
 
         GymUI.clearScreen();
         trainer.displayTrainerInfo();
@@ -353,35 +382,67 @@ public class GymManagementSystem {
         switch (choice) {
             case 1:
                 boolean newStatus = !trainer.isActive();
-                if (userManager.updateUserStatus(trainerId, newStatus)) {
+                if (userManager.updateUserStatus(trainerId, newStatus, version)) {
                     GymUI.showSuccessMessage("Status updated to: " + (newStatus ? "Active" : "Inactive"));
+                } else {
+                    showStaleEditMessage();
                 }
                 break;
             case 2:
-                String newEmail = GymUI.getValidInput(scanner, "New email: ", "Email cannot be empty!");
-                userManager.updateUserEmail(trainerId, newEmail);
+                updateEmail(trainerId, version);
                 break;
             case 3:
-                String newPassword = GymUI.getValidInput(scanner, "New password: ", "Password cannot be empty!");
-                userManager.updateUserPassword(trainerId, newPassword);
+                updatePassword(trainerId, version);
                 break;
             case 4:
                 double newRate = GymUI.getValidDouble(scanner, "New hourly rate: $");
-                trainer.setHourlyRate(newRate);
-                GymUI.showSuccessMessage("Hourly rate updated to: $" + newRate);
+                if (userManager.updateUser(trainer, version, t -> t.setHourlyRate(newRate))) {
+                    GymUI.showSuccessMessage("Hourly rate updated to: $" + newRate);
+                } else {
+                    showStaleEditMessage();
+                }
                 break;
         }
         GymUI.pauseForInput(scanner);
     }
 
-    private void renewMembership(Member member) {
+    // The admin screens' email and password changes, applied only if the user is still at
+    // the version read when the screen was shown
+    private void updateEmail(String userId, long version) {
+        String newEmail = GymUI.getValidInput(scanner, "New email: ", "Email cannot be empty!");
+        if (userManager.isEmailTaken(newEmail, userId)) {
+            GymUI.showErrorMessage("Email already registered!");
+        } else if (userManager.updateUserEmail(userId, newEmail, version)) {
+            GymUI.showSuccessMessage("Email updated to: " + newEmail.trim());
+        } else {
+            showStaleEditMessage();
+        }
+    }
+
+    private void updatePassword(String userId, long version) {
+        String newPassword = GymUI.getValidInput(scanner, "New password: ", "Password cannot be empty!");
+        if (newPassword.length() < 4) {
+            GymUI.showErrorMessage("Password too short!");
+        } else if (userManager.updateUserPassword(userId, newPassword, version)) {
+            GymUI.showSuccessMessage("Password updated!");
+        } else {
+            showStaleEditMessage();
+        }
+    }
+
+    private void renewMembership(Member member, long version) {
         System.out.println("Current expiry: " + member.getMembershipExpiry());
         int months = GymUI.getValidInt(scanner, "Extend by months: ", 1, 60);
         double payment = GymUI.getValidDouble(scanner, "Payment amount: $");
 
-        String newExpiry = LocalDate.parse(member.getMembershipExpiry()).plusMonths(months).toString();
-        member.renewMembership(newExpiry, payment);
-        GymUI.showSuccessMessage("Membership renewed until: " + newExpiry);
+        // Renewing a membership with no readable expiry starts from today
+        LocalDate from = LocalDate.ofEpochDay(member.getExpiryDay() != GymDates.NO_DATE ? member.getExpiryDay() : GymDates.today());
+        int newExpiryDay = (int) from.plusMonths(months).toEpochDay();
+        if (userManager.updateUser(member, version, m -> m.renewMembership(newExpiryDay, payment))) {
+            GymUI.showSuccessMessage("Membership renewed until: " + GymDates.formatDate(newExpiryDay));
+        } else {
+            showStaleEditMessage();
+        }
     }
 
     private void deleteMember() {
@@ -473,7 +534,7 @@ public class GymManagementSystem {
         System.out.println("Current total payments: $" + member.getTotalPayments());
 
         double amount = GymUI.getValidDouble(scanner, "Payment amount: $");
-        member.addPayment(amount);
+        userManager.recordPayment(member.getUserId(), amount);
 
         GymUI.showSuccessMessage("Payment of $" + amount + " processed for " + member.getName());
         GymUI.pauseForInput(scanner);
@@ -483,11 +544,12 @@ public class GymManagementSystem {
         GymUI.clearScreen();
         GymUI.printHeader("PAYMENT REPORTS", GymUI.CYAN);
 
+        double totalRevenue = userManager.getTotalRevenue();
+        double totalTrainerEarnings = userManager.getTotalTrainerEarnings();
         System.out.println("📊 Revenue Statistics:");
-        System.out.println("Total Member Payments: $" + String.format("%.2f", userManager.getTotalRevenue()));
-        System.out.println("Total Trainer Earnings: $" + String.format("%.2f", userManager.getTotalTrainerEarnings()));
-        System.out.println("Net Revenue: $" + String.format("%.2f",
-                userManager.getTotalRevenue() - userManager.getTotalTrainerEarnings()));
+        System.out.println("Total Member Payments: $" + String.format("%.2f", totalRevenue));
+        System.out.println("Total Trainer Earnings: $" + String.format("%.2f", totalTrainerEarnings));
+        System.out.println("Net Revenue: $" + String.format("%.2f", totalRevenue - totalTrainerEarnings));
 
         GymUI.pauseForInput(scanner);
     }
@@ -496,12 +558,7 @@ public class GymManagementSystem {
         GymUI.clearScreen();
         GymUI.printHeader("OUTSTANDING DUES", GymUI.YELLOW);
 
-        List<Member> expiredMembers = new ArrayList<>();
-        for (Member member : userManager.getAllMembers()) {
-            if (member.isMembershipExpired()) {
-                expiredMembers.add(member);
-            }
-        }
+        List<Member> expiredMembers = userManager.getExpiredMembers();
 
         if (expiredMembers.isEmpty()) {
             GymUI.showSuccessMessage("No outstanding dues!");
@@ -512,6 +569,15 @@ public class GymManagementSystem {
                         ") - Expired: " + member.getMembershipExpiry());
             }
         }
+
+        List<Member> expiringSoon = userManager.getMembersExpiringWithin(7);
+        if (!expiringSoon.isEmpty()) {
+            System.out.println("\nExpiring in the next 7 days:");
+            for (Member member : expiringSoon) {
+                System.out.println("• " + member.getName() + " (" + member.getUserId() +
+                        ") - Expires: " + member.getMembershipExpiry());
+            }
+        }
         GymUI.pauseForInput(scanner);
     }
 
@@ -533,11 +599,12 @@ public class GymManagementSystem {
             System.out.println(GymUI.CYAN + "3. 🔍 Search All Users" + GymUI.RESET);
             System.out.println(GymUI.PURPLE + "4. ➕ Register New Admin" + GymUI.RESET);
             System.out.println(GymUI.RED + "5. ⚠️ Clear All Data" + GymUI.RESET);
-            System.out.println(GymUI.WHITE + "6. ⬅️ Back to Dashboard" + GymUI.RESET);
+            System.out.println(GymUI.BLUE + "6. ♻️ Restore from Backup" + GymUI.RESET);
+            System.out.println(GymUI.WHITE + "7. ⬅️ Back to Dashboard" + GymUI.RESET);
             System.out.println();
 
-            int choice = GymUI.getMenuChoice(scanner, 6);
-            if (choice == 6) break;
+            int choice = GymUI.getMenuChoice(scanner, 7);
+            if (choice == 7) break;
 
             switch (choice) {
                 case 1:
@@ -564,8 +631,55 @@ public class GymManagementSystem {
                     }
                     GymUI.pauseForInput(scanner);
                     break;
+                case 6:
+                    restoreFromBackup();
+                    break;
+            }
+        }
+    }
+
+    private void restoreFromBackup() {
+        GymUI.clearScreen();
+        GymUI.printHeader("RESTORE FROM BACKUP", GymUI.BLUE);
+
+        List<String> backups = userManager.listBackups();
+        if (backups.isEmpty()) {
+            GymUI.showWarningMessage("No backups found.");
+            GymUI.pauseForInput(scanner);
+            return;
+        }
+
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        for (int i = 0; i < backups.size(); i++) {
+            String name = backups.get(i);
+            String created = Instant.ofEpochMilli(Long.parseLong(name.substring("backup_".length())))
+                    .atZone(ZoneId.systemDefault()).format(format);
+            System.out.println(GymUI.CYAN + (i + 1) + ". " + created + GymUI.RESET + GymUI.GRAY + " (" + name + ")" + GymUI.RESET);
+        }
+        System.out.println();
+        String backupName = backups.get(GymUI.getMenuChoice(scanner, backups.size()) - 1);
+
+        Long pointInTime = null;
+        String until = GymUI.getValidInput(scanner,
+                "Roll forward to (yyyy-MM-dd HH:mm:ss, blank to restore the backup as is): ", "");
+        if (!until.isEmpty()) {
+            try {
+                pointInTime = LocalDateTime.parse(until, format).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                GymUI.showErrorMessage("Invalid date and time: " + until);
+                GymUI.pauseForInput(scanner);
+                return;
+            }
+        }
+
+        if (GymUI.confirmAction(scanner, "replace ALL current data with this backup")) {
+            if (userManager.restoreBackup(backupName, pointInTime)) {
+                GymUI.showSuccessMessage("Data restored! Please log in again.");
+            } else {
+                GymUI.showErrorMessage("Restore failed; the current data was kept.");
             }
         }
+        GymUI.pauseForInput(scanner);
     }
 
     private void showSystemInformation() {
@@ -591,13 +705,24 @@ public class GymManagementSystem {
 
     private void searchAllUsers() {
         String searchTerm = GymUI.getValidInput(scanner, "Enter search term: ", "Search term cannot be empty!");
-        List<User> results = userManager.searchUsers(searchTerm);
+        // An exact email or phone number goes straight to its owner
+        User exactMatch = userManager.findUserByEmail(searchTerm);
+        if (exactMatch == null) {
+            exactMatch = userManager.findUserByPhone(searchTerm);
+        }
+        List<User> results = exactMatch != null ? Collections.singletonList(exactMatch) : userManager.searchUsers(searchTerm);
+        boolean fuzzy = false;
+        if (results.isEmpty()) {
+            // Nothing contains the term as typed; try close spellings of a name
+            results = userManager.fuzzySearchUsers(searchTerm);
+            fuzzy = !results.isEmpty();
+        }
 
         System.out.println();
         if (results.isEmpty()) {
             GymUI.showWarningMessage("No users found matching: " + searchTerm);
         } else {
-            System.out.println(GymUI.BOLD + "Search Results (" + results.size() + "):" + GymUI.RESET);
+            System.out.println(GymUI.BOLD + (fuzzy ? "Did you mean (" : "Search Results (") + results.size() + "):" + GymUI.RESET);
             System.out.println();
             for (User user : results) {
                 String roleColor = GymUI.getColorForRole(user.getRole());
@@ -662,10 +787,11 @@ public class GymManagementSystem {
 
         String workoutPlan = GymUI.getValidInput(scanner, "\nEnter workout plan: ", "Workout plan cannot be empty!");
 
-        trainer.createWorkoutPlan(selectedMember.getUserId(), workoutPlan);
-        selectedMember.addWorkout(workoutPlan);
-
-        GymUI.showSuccessMessage("Workout plan created successfully!");
+        if (userManager.createWorkoutPlan(trainer.getUserId(), selectedMember.getUserId(), workoutPlan)) {
+            GymUI.showSuccessMessage("Workout plan created successfully!");
+        } else {
+            GymUI.showErrorMessage("Failed to create workout plan.");
+        }
         GymUI.pauseForInput(scanner);
     }
 
@@ -689,11 +815,14 @@ public class GymManagementSystem {
         int choice = GymUI.getMenuChoice(scanner, assignedMembers.size());
         Member selectedMember = assignedMembers.get(choice - 1);
 
-        selectedMember.markAttendance();
+        userManager.markAttendance(selectedMember.getUserId());
         double hours = GymUI.getValidDouble(scanner, "Hours worked: ");
-        trainer.completeSession(selectedMember.getUserId(), hours);
-
-        GymUI.showSuccessMessage("Attendance marked! Earnings: $" + (hours * trainer.getHourlyRate()));
+        double earnings = userManager.completeSession(trainer.getUserId(), selectedMember.getUserId(), hours);
+        if (earnings >= 0) {
+            GymUI.showSuccessMessage("Attendance marked! Earnings: $" + earnings);
+        } else {
+            GymUI.showErrorMessage("Failed to record the session.");
+        }
         GymUI.pauseForInput(scanner);
     }
 
@@ -711,8 +840,12 @@ public class GymManagementSystem {
         int choice = GymUI.getMenuChoice(scanner, 3);
         String availability = choice == 1 ? "Available" : choice == 2 ? "Busy" : "On Leave";
 
-        trainer.updateSchedule(newHours, availability);
-        GymUI.showSuccessMessage("Availability updated!");
+        String workingHours = newHours;
+        if (userManager.updateUser(trainer, UserManager.ANY_VERSION, t -> t.updateSchedule(workingHours, availability))) {
+            GymUI.showSuccessMessage("Availability updated!");
+        } else {
+            GymUI.showErrorMessage("Failed to update availability.");
+        }
         GymUI.pauseForInput(scanner);
     }
 
@@ -733,32 +866,50 @@ public class GymManagementSystem {
         System.out.println("4. Change Password");
 
         int choice = GymUI.getMenuChoice(scanner, 4);
+        // Edits apply only if an admin did not change the trainer meanwhile
+        long version = userManager.getVersion(trainer.getUserId());
+        boolean saved = true;
 
         switch (choice) {
             case 1:
                 String phone = GymUI.getValidInput(scanner, "Phone: ", "");
                 String address = GymUI.getValidInput(scanner, "Address: ", "");
-                trainer.setPhoneNumber(phone);
-                trainer.setAddress(address);
+                if (userManager.isPhoneTaken(phone, trainer.getUserId())) {
+                    GymUI.showErrorMessage("Phone number already registered!");
+                    GymUI.pauseForInput(scanner);
+                    return;
+                }
+                saved = userManager.updateUser(trainer, version, phone, t -> t.setAddress(address));
                 break;
             case 2:
                 String spec = GymUI.getValidInput(scanner, "Specialization: ", "");
                 String exp = GymUI.getValidInput(scanner, "Experience: ", "");
                 double rate = GymUI.getValidDouble(scanner, "Hourly rate: $");
-                trainer.setSpecialization(spec);
-                trainer.setExperience(exp);
-                trainer.setHourlyRate(rate);
+                saved = userManager.updateUser(trainer, version, t -> {
+                    t.setSpecialization(spec);
+                    t.setExperience(exp);
+                    t.setHourlyRate(rate);
+                });
                 break;
             case 3:
                 String cert = GymUI.getValidInput(scanner, "Certification: ", "");
-                trainer.addCertification(cert);
+                saved = userManager.updateUser(trainer, version, t -> t.addCertification(cert));
                 break;
             case 4:
                 String newPassword = GymUI.getValidInput(scanner, "New password: ", "Password cannot be empty!");
-                userManager.updateUserPassword(trainer.getUserId(), newPassword);
+                if (newPassword.length() < 4) {
+                    GymUI.showErrorMessage("Password too short!");
+                    GymUI.pauseForInput(scanner);
+                    return;
+                }
+                saved = userManager.updateUserPassword(trainer.getUserId(), newPassword, version);
                 break;
         }
-        GymUI.showSuccessMessage("Profile updated!");
+        if (saved) {
+            GymUI.showSuccessMessage("Profile updated!");
+        } else {
+            showStaleEditMessage();
+        }
         GymUI.pauseForInput(scanner);
     }
 
@@ -792,7 +943,7 @@ public class GymManagementSystem {
         GymUI.clearScreen();
         GymUI.printHeader("MARK ATTENDANCE", GymUI.GREEN);
 
-        member.markAttendance();
+        userManager.markAttendance(member.getUserId());
         GymUI.showSuccessMessage("Attendance marked for today!");
         System.out.println("Total attendance: " + member.getAttendanceHistory().size() + " days");
         GymUI.pauseForInput(scanner);
@@ -815,7 +966,7 @@ public class GymManagementSystem {
 
         if (choice == 1) {
             double amount = GymUI.getValidDouble(scanner, "Payment amount: $");
-            member.addPayment(amount);
+            userManager.recordPayment(member.getUserId(), amount);
             GymUI.showSuccessMessage("Payment of $" + amount + " recorded!");
         }
         GymUI.pauseForInput(scanner);
@@ -831,34 +982,55 @@ public class GymManagementSystem {
         System.out.println("4. Change Password");
 
         int choice = GymUI.getMenuChoice(scanner, 4);
+        // Edits apply only if staff did not change the member meanwhile
+        long version = userManager.getVersion(member.getUserId());
+        boolean saved = true;
 
         switch (choice) {
             case 1:
                 String phone = GymUI.getValidInput(scanner, "Phone: ", "");
                 String address = GymUI.getValidInput(scanner, "Address: ", "");
                 String emergency = GymUI.getValidInput(scanner, "Emergency contact: ", "");
-                member.setPhoneNumber(phone);
-                member.setAddress(address);
-                member.setEmergencyContact(emergency);
+                if (userManager.isPhoneTaken(phone, member.getUserId())) {
+                    GymUI.showErrorMessage("Phone number already registered!");
+                    GymUI.pauseForInput(scanner);
+                    return;
+                }
+                // All three fields in one update, so nothing is saved if any part fails
+                saved = userManager.updateUser(member, version, phone, m -> {
+                    m.setAddress(address);
+                    m.setEmergencyContact(emergency);
+                });
                 break;
             case 2:
                 String goal = GymUI.getValidInput(scanner, "Fitness goal: ", "");
-                member.setFitnessGoal(goal);
+                saved = userManager.updateUser(member, version, m -> m.setFitnessGoal(goal));
                 break;
             case 3:
                 double weight = GymUI.getValidDouble(scanner, "Weight (kg): ");
                 double height = GymUI.getValidDouble(scanner, "Height (cm): ");
                 String medical = GymUI.getValidInput(scanner, "Medical conditions: ", "");
-                member.setWeight(weight);
-                member.setHeight(height);
-                member.setMedicalConditions(medical.isEmpty() ? "None" : medical);
+                saved = userManager.updateUser(member, version, m -> {
+                    m.setWeight(weight);
+                    m.setHeight(height);
+                    m.setMedicalConditions(medical.isEmpty() ? "None" : medical);
+                });
                 break;
             case 4:
                 String newPassword = GymUI.getValidInput(scanner, "New password: ", "Password cannot be empty!");
-                userManager.updateUserPassword(member.getUserId(), newPassword);
+                if (newPassword.length() < 4) {
+                    GymUI.showErrorMessage("Password too short!");
+                    GymUI.pauseForInput(scanner);
+                    return;
+                }
+                saved = userManager.updateUserPassword(member.getUserId(), newPassword, version);
                 break;
         }
-        GymUI.showSuccessMessage("Profile updated!");
+        if (saved) {
+            GymUI.showSuccessMessage("Profile updated!");
+        } else {
+            showStaleEditMessage();
+        }
         GymUI.pauseForInput(scanner);
     }
 
@@ -882,9 +1054,13 @@ public class GymManagementSystem {
         GymUI.pauseForInput(scanner);
     }
 
+    private void showStaleEditMessage() {
+        GymUI.showErrorMessage("Someone else changed this user meanwhile; nothing was saved. Please try again.");
+    }
+
     private void logout() {
         GymUI.showLoadingAnimation("Logging out");
-        userManager.logout();
+        userManager.logout(session);
         GymUI.showSuccessMessage("Logged out successfully!");
         try { Thread.sleep(1000); } catch (InterruptedException e) {}
     }
@@ -912,6 +1088,12 @@ public class GymManagementSystem {
                 return;
             }
 
+            if (userManager.isPhoneTaken(phone)) {
+                GymUI.showErrorMessage("Phone number already registered!");
+                GymUI.pauseForInput(scanner);
+                return;
+            }
+
             String password = GymUI.getValidInput(scanner, "Password (min 4 chars): ", "Password cannot be empty!");
             if (password.length() < 4) {
                 GymUI.showErrorMessage("Password too short!");
@@ -933,11 +1115,7 @@ public class GymManagementSystem {
             String fitnessGoal = GymUI.getValidInput(scanner, "Fitness Goal: ", "Goal cannot be empty!");
 
             if (userManager.registerMember(userId, name, email, password, membershipType, joinDate, membershipExpiry, fitnessGoal)) {
-                // Set phone number
-                Member newMember = userManager.getMemberById(userId);
-                if (newMember != null) {
-                    newMember.setPhoneNumber(phone);
-                }
+                userManager.updateUserPhone(userId, phone);
                 GymUI.showSuccessMessage("Member registered successfully!");
                 System.out.println("ID: " + userId + " | Type: " + membershipType + " | Valid until: " + membershipExpiry);
             }
@@ -969,6 +1147,12 @@ public class GymManagementSystem {
                 return;
             }
 
+            if (userManager.isPhoneTaken(phone)) {
+                GymUI.showErrorMessage("Phone number already registered!");
+                GymUI.pauseForInput(scanner);
+                return;
+            }
+
             String password = GymUI.getValidInput(scanner, "Password (min 4 chars): ", "Password cannot be empty!");
             if (password.length() < 4) {
                 GymUI.showErrorMessage("Password too short!");
@@ -982,11 +1166,7 @@ public class GymManagementSystem {
             int maxClients = GymUI.getValidInt(scanner, "Max Clients: ", 1, 50);
 
             if (userManager.registerTrainer(userId, name, email, password, specialization, experience, hourlyRate, maxClients)) {
-                // Set phone number
-                Trainer newTrainer = userManager.getTrainerById(userId);
-                if (newTrainer != null) {
-                    newTrainer.setPhoneNumber(phone);
-                }
+                userManager.updateUserPhone(userId, phone);
                 GymUI.showSuccessMessage("Trainer registered successfully!");
                 System.out.println("ID: " + userId + " | Specialization: " + specialization + " | Rate: $" + hourlyRate + "/hr");
             }
@@ -1018,6 +1198,12 @@ public class GymManagementSystem {
                 return;
             }
 
+            if (userManager.isPhoneTaken(phone)) {
+                GymUI.showErrorMessage("Phone number already registered!");
+                GymUI.pauseForInput(scanner);
+                return;
+            }
+
             String password = GymUI.getValidInput(scanner, "Password (min 4 chars): ", "Password cannot be empty!");
             if (password.length() < 4) {
                 GymUI.showErrorMessage("Password too short!");
@@ -1034,11 +1220,7 @@ public class GymManagementSystem {
             String adminLevel = levelChoice == 1 ? "Basic" : levelChoice == 2 ? "Manager" : "Super";
 
             if (userManager.registerAdmin(userId, name, email, password, adminLevel)) {
-                // Set phone number
-                Admin newAdmin = userManager.getAdminById(userId);
-                if (newAdmin != null) {
-                    newAdmin.setPhoneNumber(phone);
-                }
+                userManager.updateUserPhone(userId, phone);
                 GymUI.showSuccessMessage("Admin registered successfully!");
                 System.out.println("ID: " + userId + " | Level: " + adminLevel);
             }
@@ -1049,6 +1231,7 @@ public class GymManagementSystem {
     }
 
     public void cleanup() {
+        userManager.shutdown();
         if (scanner != null) {
             scanner.close();
         }
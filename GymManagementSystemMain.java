@@ -5,11 +5,16 @@ public class GymManagementSystemMain {
     private GymManagementSystem gymSystem;
     private Scanner scanner;
     private boolean isRunning;
+    private GymApiServer apiServer;
+    private boolean dataClosed;
 
     public GymManagementSystemMain() {
         this.gymSystem = new GymManagementSystem();
         this.scanner = new Scanner(System.in);
         this.isRunning = true;
+        // Ctrl-C or closing the window still flushes and compacts; after a normal exit
+        // this has already run and the hook does nothing
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeData, "gym-shutdown"));
         initializeDefaultAdmin();
     }
 
@@ -29,11 +34,57 @@ public class GymManagementSystemMain {
         // If users exist, don't create anything - let the existing system work
     }
 
+    // --api or --api=<port> also serves the HTTP API while the menus run
     public static void main(String[] args) {
+        Integer apiPort = null;
+        for (String arg : args) {
+            if (arg.equals("--api")) {
+                apiPort = 8080;
+            } else if (arg.startsWith("--api=")) {
+                apiPort = parsePort(arg.substring("--api=".length()));
+                if (apiPort == null) {
+                    System.err.println("Invalid port: " + arg.substring("--api=".length()));
+                    printUsage();
+                    System.exit(2);
+                }
+            }
+        }
+
         GymManagementSystemMain app = new GymManagementSystemMain();
+        if (apiPort != null) {
+            // See GymApiServer; must be set before the first server starts
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            app.startApi(apiPort);
+        }
         app.run();
     }
 
+    private static Integer parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            return port >= 0 && port <= 65535 ? port : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: java GymManagementSystemMain [--api[=<port>]]");
+        System.err.println("  --api          also serve the HTTP API, on port 8080");
+        System.err.println("  --api=<port>   also serve the HTTP API, on the given port (0 picks a free one)");
+    }
+
+    private void startApi(int port) {
+        try {
+            apiServer = new GymApiServer(gymSystem.getUserManager(), port);
+            apiServer.start();
+        } catch (Exception e) {
+            GymUI.showErrorMessage("Could not start API on port " + port + ": " + e.getMessage());
+        }
+    }
+
     public void run() {
         try {
             showWelcomeScreen();
@@ -51,6 +102,9 @@ public class GymManagementSystemMain {
         GymUI.clearScreen();
         GymUI.printWelcomeBanner();
         GymUI.showLoadingAnimation("Initializing system");
+        UserManager userManager = gymSystem.getUserManager();
+        GymUI.showSystemStatus(userManager.getTotalUserCount() > 0, userManager.getTotalUserCount(),
+                userManager.getStartupTimings());
         try { Thread.sleep(1000); } catch (InterruptedException e) {}
     }
 
@@ -104,12 +158,13 @@ public class GymManagementSystemMain {
 
             GymUI.showLoadingAnimation("Authenticating");
 
-            if (gymSystem.getUserManager().login(userId, password)) {
-                User currentUser = gymSystem.getUserManager().getCurrentUser();
+            UserSession session = gymSystem.getUserManager().login(userId, password);
+            if (session != null) {
+                User currentUser = session.getUser();
 
                 if (!currentUser.getRole().equals(expectedRole)) {
                     GymUI.showErrorMessage("Access denied! This is a " + roleName + " login portal.");
-                    gymSystem.getUserManager().logout();
+                    gymSystem.getUserManager().logout(session);
                     GymUI.pauseForInput(scanner);
                     return;
                 }
@@ -117,9 +172,10 @@ public class GymManagementSystemMain {
                 GymUI.showSuccessMessage("Welcome, " + currentUser.getName() + "!");
                 Thread.sleep(800);
 
-                // Enter user session loop
-                while (gymSystem.getUserManager().getCurrentUser() != null) {
-                    gymSystem.handleUserSession();
+                // Enter user session loop; looking the session up each time keeps it
+                // from going idle, and ends the loop once it has expired
+                while (gymSystem.getUserManager().getSession(session.getToken()) != null) {
+                    gymSystem.handleUserSession(session);
                 }
             } else {
                 GymUI.showErrorMessage("Invalid credentials or inactive account!");
@@ -148,20 +204,35 @@ public class GymManagementSystemMain {
 
         GymUI.showLoadingAnimation("Shutting down");
 
-        if (gymSystem.getUserManager().getCurrentUser() != null) {
-            gymSystem.getUserManager().logout();
-        }
+        // Closed sessions are ignored, so this only matters if one is still open
+        gymSystem.getUserManager().logout(gymSystem.getSession());
 
         isRunning = false;
         System.out.println(GymUI.GREEN + "✅ System shutdown complete." + GymUI.RESET);
     }
 
     private void cleanup() {
+        closeData();
         try {
-            if (gymSystem != null) gymSystem.cleanup();
+            if (gymSystem != null) gymSystem.getScanner().close();
             if (scanner != null) scanner.close();
         } catch (Exception e) {
             System.err.println("Cleanup error: " + e.getMessage());
         }
     }
+
+    // Stop the API and save everything. Standard input is left alone: the shutdown hook
+    // runs while the main thread may still be blocked reading it.
+    private synchronized void closeData() {
+        if (dataClosed) {
+            return;
+        }
+        dataClosed = true;
+        try {
+            if (apiServer != null) apiServer.stop();
+            if (gymSystem != null) gymSystem.getUserManager().shutdown();
+        } catch (Exception e) {
+            System.err.println("Cleanup error: " + e.getMessage());
+        }
+    }
 }
\ No newline at end of file
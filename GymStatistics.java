@@ -0,0 +1,178 @@
+// GymStatistics.java - Running totals behind the reports, updated as users change
+import java.util.*;
+
+public class GymStatistics {
+    // The last counted values of every user are kept, so counting a user again after a
+    // change takes its old values out of the totals and puts the new ones in; a report
+    // reads the totals instead of scanning all users. Money is summed in cents so that
+    // repeated updates do not drift. Expiry days are bucketed per day, and members whose
+    // day has passed move to the expired count when the totals are next read.
+
+    private static class Counted {
+        final String role;
+        final boolean active;
+        final String membershipType;
+        final int expiryDay;
+        final long paymentCents;
+        final long earningsCents;
+        final boolean acceptsClients;
+
+        Counted(User user) {
+            this.role = user.getRole();
+            this.active = user.isActive();
+            if (user instanceof Member) {
+                Member member = (Member) user;
+                this.membershipType = member.getMembershipType();
+                this.expiryDay = member.getExpiryDay();
+                this.paymentCents = toCents(member.getTotalPayments());
+            } else {
+                this.membershipType = null;
+                this.expiryDay = GymDates.NO_DATE;
+                this.paymentCents = 0;
+            }
+            if (user instanceof Trainer) {
+                Trainer trainer = (Trainer) user;
+                this.earningsCents = toCents(trainer.getTotalEarnings());
+                this.acceptsClients = trainer.canTakeMoreClients();
+            } else {
+                this.earningsCents = 0;
+                this.acceptsClients = false;
+            }
+        }
+    }
+
+    // Members per expiry day, and how many of those days are before the current one
+    private static class ExpiryCounter {
+        private final TreeMap<Integer, Integer> byDay = new TreeMap<>();
+        private int today = GymDates.today();
+        private int expired;
+
+        void add(int day, int delta) {
+            if (day == GymDates.NO_DATE) {
+                return;
+            }
+            byDay.merge(day, delta, Integer::sum);
+            if (byDay.get(day) == 0) {
+                byDay.remove(day);
+            }
+            if (day < today) {
+                expired += delta;
+            }
+        }
+
+        // Only the days between the last read and now are looked at
+        int expired(int now) {
+            if (now > today) {
+                for (int count : byDay.subMap(today, true, now, false).values()) {
+                    expired += count;
+                }
+            } else if (now < today) {
+                for (int count : byDay.subMap(now, true, today, false).values()) {
+                    expired -= count;
+                }
+            }
+            today = now;
+            return expired;
+        }
+
+        void clear() {
+            byDay.clear();
+            expired = 0;
+        }
+    }
+
+    private final Map<String, Counted> counted = new HashMap<>();
+    private int activeMembers;
+    private final ExpiryCounter memberExpiry = new ExpiryCounter();
+    private final ExpiryCounter activeMemberExpiry = new ExpiryCounter();
+    private final Map<String, Integer> membershipTypes = new TreeMap<>();
+    private long revenueCents;
+    private long trainerEarningsCents;
+    private int availableTrainers;
+    private int fullyBookedTrainers;
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    // Count a new user, or a changed one again
+    public synchronized void put(User user) {
+        Counted old = counted.get(user.getUserId());
+        Counted now = new Counted(user);
+        if (old != null) {
+            apply(old, -1);
+        }
+        apply(now, 1);
+        counted.put(user.getUserId(), now);
+    }
+
+    public synchronized void remove(String userId) {
+        Counted old = counted.remove(userId);
+        if (old != null) {
+            apply(old, -1);
+        }
+    }
+
+    public synchronized void clear() {
+        counted.clear();
+        activeMembers = 0;
+        memberExpiry.clear();
+        activeMemberExpiry.clear();
+        membershipTypes.clear();
+        revenueCents = 0;
+        trainerEarningsCents = 0;
+        availableTrainers = 0;
+        fullyBookedTrainers = 0;
+    }
+
+    private void apply(Counted user, int sign) {
+        if ("MEMBER".equals(user.role)) {
+            memberExpiry.add(user.expiryDay, sign);
+            if (user.active) {
+                activeMembers += sign;
+                activeMemberExpiry.add(user.expiryDay, sign);
+            }
+            if (membershipTypes.merge(String.valueOf(user.membershipType), sign, Integer::sum) == 0) {
+                membershipTypes.remove(String.valueOf(user.membershipType));
+            }
+            revenueCents += sign * user.paymentCents;
+        } else if ("TRAINER".equals(user.role)) {
+            trainerEarningsCents += sign * user.earningsCents;
+            if (user.active && user.acceptsClients) {
+                availableTrainers += sign;
+            } else if (user.active) {
+                fullyBookedTrainers += sign;
+            }
+        }
+    }
+
+    // Active members whose membership has not run out
+    public synchronized int getActiveMemberCount() {
+        return activeMembers - activeMemberExpiry.expired(GymDates.today());
+    }
+
+    public synchronized int getExpiredMemberCount() {
+        return memberExpiry.expired(GymDates.today());
+    }
+
+    // Membership type -> members, in type order
+    public synchronized Map<String, Integer> getMembershipBreakdown() {
+        return new TreeMap<>(membershipTypes);
+    }
+
+    public synchronized double getTotalRevenue() {
+        return revenueCents / 100.0;
+    }
+
+    public synchronized double getTotalTrainerEarnings() {
+        return trainerEarningsCents / 100.0;
+    }
+
+    public synchronized int getAvailableTrainerCount() {
+        return availableTrainers;
+    }
+
+    public synchronized int getFullyBookedTrainerCount() {
+        return fullyBookedTrainers;
+    }
+}
@@ -1,4 +1,5 @@
 // GymUI.java - Enhanced UI with Improved Screen Clearing
+import java.util.Map;
 import java.util.Scanner;
 
 public class GymUI {
@@ -329,6 +330,18 @@ public class GymUI {
         System.out.println(BOLD + GRAY + "════════════════════════════════════════" + RESET);
     }
 
+    public static void showSystemStatus(boolean dataLoaded, int userCount, Map<String, Long> startupTimings) {
+        showSystemStatus(dataLoaded, userCount);
+        if (startupTimings == null || startupTimings.isEmpty()) {
+            return;
+        }
+        System.out.println(GRAY + "⏱️ Startup timing:" + RESET);
+        for (Map.Entry<String, Long> phase : startupTimings.entrySet()) {
+            System.out.println(GRAY + String.format("   %-24s %6d ms", phase.getKey(), phase.getValue()) + RESET);
+        }
+        System.out.println(BOLD + GRAY + "════════════════════════════════════════" + RESET);
+    }
+
     // Progress and Statistics Display
     public static void printStatCard(String title, String value, String color, String icon) {
         System.out.println(color + "┌─────────────────┐");
@@ -0,0 +1,249 @@
+// HotFieldStore.java - Memory-mapped fixed-slot store for frequently updated member fields
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class HotFieldStore {
+    // Layout: 16-byte header, then fixed-size slots, one per user:
+    //   [byte used][byte active][short pad][id 2+30][totalPayments 8][expiry 4][pad 12][trainerId 2+30][pad 4]
+    // Strings are [short length][utf-8 bytes], length -1 for null; the expiry is an epoch
+    // day (version 1 kept it as a string in the same place). A change rewrites one slot
+    // in the mapped region instead of re-encoding the user's whole shard.
+    private static final int MAGIC = 0x47594D48; // "GYMH"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 96;
+    private static final int GROWTH_SLOTS = 1024;
+
+    private static final int USED_OFFSET = 0;
+    private static final int ACTIVE_OFFSET = 1;
+    private static final int ID_OFFSET = 4;
+    private static final int ID_BYTES = 30;
+    private static final int PAYMENTS_OFFSET = 36;
+    private static final int EXPIRY_OFFSET = 44;
+    private static final int TRAINER_OFFSET = 60;
+    private static final int TRAINER_BYTES = 30;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int nextSlot;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    public HotFieldStore(String path) throws IOException {
+        this.file = new File(path);
+        boolean created = !file.exists() || file.length() < HEADER_SIZE;
+        this.raf = new RandomAccessFile(file, "rw");
+        if (created) {
+            raf.setLength(0);
+            map(GROWTH_SLOTS);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, SLOT_SIZE);
+            return;
+        }
+
+        map((int) ((raf.length() - HEADER_SIZE) / SLOT_SIZE));
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(8) != SLOT_SIZE) {
+            raf.close();
+            throw new IOException("Not a hot field file: " + path);
+        }
+        boolean upgrade = buffer.getInt(4) < VERSION;
+        // Only the ids are read to rebuild the slot index
+        for (int slot = 0; slot < capacity; slot++) {
+            if (buffer.get(offset(slot) + USED_OFFSET) != 0) {
+                slots.put(readString(offset(slot) + ID_OFFSET), slot);
+                nextSlot = slot + 1;
+                if (upgrade) {
+                    int base = offset(slot) + EXPIRY_OFFSET;
+                    buffer.putInt(base, GymDates.parseDate(readString(base)));
+                }
+            }
+        }
+        if (upgrade) {
+            buffer.putInt(4, VERSION);
+            buffer.force();
+        }
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (buffer.get(offset(slot) + USED_OFFSET) == 0) {
+                freeSlots.add(slot);
+            }
+        }
+    }
+
+    private void map(int slotCount) throws IOException {
+        capacity = slotCount;
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Store the user's current hot fields in its slot. Returns false if a value is too
+    // long for a slot, in which case the caller has to persist the user another way.
+    public synchronized boolean write(User user) {
+        String userId = user.getUserId();
+        Member member = user instanceof Member ? (Member) user : null;
+        String trainerId = member != null ? member.getAssignedTrainerId() : null;
+        if (!fits(userId, ID_BYTES) || !fits(trainerId, TRAINER_BYTES)) {
+            remove(userId);
+            return false;
+        }
+
+        try {
+            Integer slot = slots.get(userId);
+            if (slot == null) {
+                slot = allocate();
+                slots.put(userId, slot);
+            }
+            int base = offset(slot);
+            buffer.put(base + ACTIVE_OFFSET, (byte) (user.isActive() ? 1 : 0));
+            writeString(base + ID_OFFSET, userId);
+            buffer.putDouble(base + PAYMENTS_OFFSET, member != null ? member.getTotalPayments() : 0);
+            buffer.putInt(base + EXPIRY_OFFSET, member != null ? member.getExpiryDay() : GymDates.NO_DATE);
+            writeString(base + TRAINER_OFFSET, trainerId);
+            buffer.put(base + USED_OFFSET, (byte) 1);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error growing hot field file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized void remove(String userId) {
+        Integer slot = slots.remove(userId);
+        if (slot != null) {
+            buffer.put(offset(slot) + USED_OFFSET, (byte) 0);
+            freeSlots.add(slot);
+        }
+    }
+
+    public synchronized void clear() {
+        for (int slot : slots.values()) {
+            buffer.put(offset(slot) + USED_OFFSET, (byte) 0);
+        }
+        slots.clear();
+        freeSlots.clear();
+        nextSlot = 0;
+    }
+
+    // Overlay stored values onto freshly loaded users; they may be newer than the shards
+    public synchronized int applyTo(Map<String, User> users) {
+        int applied = 0;
+        for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+            User user = users.get(entry.getKey());
+            if (user != null) {
+                apply(user, entry.getValue());
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    public synchronized boolean applyTo(User user) {
+        Integer slot = slots.get(user.getUserId());
+        if (slot == null) {
+            return false;
+        }
+        apply(user, slot);
+        return true;
+    }
+
+    private void apply(User user, int slot) {
+        int base = offset(slot);
+        user.setActive(buffer.get(base + ACTIVE_OFFSET) != 0);
+        if (user instanceof Member) {
+            Member member = (Member) user;
+            member.setTotalPayments(buffer.getDouble(base + PAYMENTS_OFFSET));
+            member.setExpiryDay(buffer.getInt(base + EXPIRY_OFFSET));
+            member.setAssignedTrainerId(readString(base + TRAINER_OFFSET));
+        }
+    }
+
+    // Make the store match the given users exactly
+    public synchronized void sync(Map<String, User> users) {
+        for (String userId : new ArrayList<>(slots.keySet())) {
+            if (!users.containsKey(userId)) {
+                remove(userId);
+            }
+        }
+        for (User user : users.values()) {
+            write(user);
+        }
+    }
+
+    public synchronized boolean force() {
+        try {
+            buffer.force();
+            return true;
+        } catch (UncheckedIOException e) {
+            System.err.println("Error syncing hot field file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Write a consistent image of the store; slots cannot change while it is copied
+    public synchronized void copyTo(File target) throws IOException {
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            FileChannel in = raf.getChannel();
+            long size = in.size();
+            for (long position = 0; position < size; ) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    public synchronized int getSlotCount() { return slots.size(); }
+    public File getFile() { return file; }
+
+    public synchronized void close() {
+        force();
+        try {
+            raf.close();
+        } catch (IOException e) {
+            System.err.println("Error closing hot field file: " + e.getMessage());
+        }
+    }
+
+    private int allocate() throws IOException {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.poll();
+        }
+        if (nextSlot == capacity) {
+            buffer.force();
+            map(capacity + Math.max(GROWTH_SLOTS, capacity / 2));
+        }
+        return nextSlot++;
+    }
+
+    private static boolean fits(String value, int maxBytes) {
+        return value == null || value.getBytes(StandardCharsets.UTF_8).length <= maxBytes;
+    }
+
+    private void writeString(int position, String value) {
+        if (value == null) {
+            buffer.putShort(position, (short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort(position, (short) bytes.length);
+        buffer.put(position + 2, bytes);
+    }
+
+    private String readString(int position) {
+        int length = buffer.getShort(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+// JournalRecoveryTest.java - Crash, restart, compact, restart: journaled changes must survive
+// Run with: java JournalRecoveryTest   (each phase runs in its own JVM in a temporary directory;
+// -Dgym.* options such as -Dgym.lazyLoad=true are passed on to the phases)
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class JournalRecoveryTest {
+    private static final String MEMBER_ID = "RecoveryMember";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            System.exit(runPhase(args[0]) ? 0 : 1);
+        }
+
+        File dir = Files.createTempDirectory("gym-recovery").toFile();
+        boolean passed = runChild(JournalRecoveryTest.class, dir, "crash")   // register, flush, then die without shutting down
+                && runChild(JournalRecoveryTest.class, dir, "restart")      // recovered from the journal; normal exit compacts
+                && runChild(JournalRecoveryTest.class, dir, "verify");      // must still be there after the compaction
+        System.out.println(passed ? "PASS: member survived crash, restart and compaction"
+                : "FAIL: see output above (data left in " + dir + ")");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Runs one phase of a test's main class in a fresh JVM in dir, sharing this console
+    static boolean runChild(Class<?> main, File dir, String phase) throws Exception {
+        Process process = new ProcessBuilder(childCommand(main, phase)).directory(dir).inheritIO().start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            System.out.println("Phase '" + phase + "' failed with exit code " + exitCode);
+        }
+        return exitCode == 0;
+    }
+
+    // The command line for a child JVM running main with args; -Dgym.* options are passed on
+    static List<String> childCommand(Class<?> main, String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(absoluteClassPath());
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("gym.")) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        command.add(main.getName());
+        command.addAll(Arrays.asList(args));
+        return command;
+    }
+
+    // The children run in another directory, so relative class path entries are resolved here
+    static String absoluteClassPath() {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            entries.add(new File(entry).getAbsolutePath());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static boolean runPhase(String phase) {
+        UserManager userManager = new UserManager();
+        switch (phase) {
+            case "crash":
+                if (!userManager.registerMember(MEMBER_ID, "Recovery Member", "recovery@gym.com", "password1",
+                        "Premium", "2026-01-01", "2027-01-01", "Strength")
+                        || !userManager.recordPayment(MEMBER_ID, 42.5)) {
+                    return false;
+                }
+                userManager.flush();
+                // Like a killed process: no shutdown hooks, no final compaction
+                Runtime.getRuntime().halt(0);
+                return false;
+            case "restart":
+                boolean present = hasMember(userManager);
+                userManager.shutdown();
+                return present;
+            case "verify":
+                return hasMember(userManager);
+            default:
+                System.out.println("Unknown phase: " + phase);
+                return false;
+        }
+    }
+
+    private static boolean hasMember(UserManager userManager) {
+        Member member = userManager.getMemberById(MEMBER_ID);
+        boolean ok = member != null && member.getTotalPayments() == 42.5;
+        System.out.println("  member " + (member == null ? "missing" : "present, payments $" + member.getTotalPayments()));
+        return ok;
+    }
+}
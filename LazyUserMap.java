@@ -0,0 +1,378 @@
+// LazyUserMap.java - User map that keeps only a summary per user and loads records on demand
+import java.io.*;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+public class LazyUserMap extends AbstractMap<String, User> {
+    private static final int SHARD_READER_CACHE = 4;
+
+    // What startup reads for every user; the full record stays in its shard file
+    public static class Summary {
+        final String userId;
+        final String role;
+        final int shard;
+        String email;
+        String name;
+        String phone;
+        int offset; // record position in the shard file, -1 if not written yet
+
+        Summary(String userId, String role, int shard, String email, String name, String phone, int offset) {
+            this.userId = userId;
+            this.role = role;
+            this.shard = shard;
+            this.email = email;
+            this.name = name;
+            this.phone = phone;
+            this.offset = offset;
+        }
+
+        public String getUserId() { return userId; }
+        public String getRole() { return role; }
+        public String getEmail() { return email; }
+        public String getName() { return name; }
+        public String getPhone() { return phone; }
+    }
+
+    private final Map<String, Summary> summaries;
+    private final IntFunction<File> shardFiles;
+    private final int cacheSize;
+
+    // Users with changes not yet in their shard file are pinned and never evicted
+    private final Map<String, User> pinned = new HashMap<>();
+    private final LinkedHashMap<String, User> cache;
+    // Evicted users that are still referenced elsewhere keep their identity
+    private final Map<String, UserReference> loaded = new HashMap<>();
+    private final ReferenceQueue<User> collected = new ReferenceQueue<>();
+    private final LinkedHashMap<Integer, UserCodec.Reader> shardReaders =
+            new LinkedHashMap<Integer, UserCodec.Reader>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, UserCodec.Reader> eldest) {
+                    return size() > SHARD_READER_CACHE;
+                }
+            };
+
+    private final List<Consumer<User>> loadListeners = new ArrayList<>();
+    private boolean pinOnAccess;
+    private boolean cleared;
+    private long loads;
+
+    private static class UserReference extends WeakReference<User> {
+        final String userId;
+
+        UserReference(User user, ReferenceQueue<User> queue) {
+            super(user, queue);
+            this.userId = user.getUserId();
+        }
+    }
+
+    public LazyUserMap(Map<String, Summary> summaries, IntFunction<File> shardFiles, int cacheSize) {
+        this.summaries = summaries;
+        this.shardFiles = shardFiles;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<String, User>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > LazyUserMap.this.cacheSize;
+            }
+        };
+    }
+
+    // Called with every user read from a shard, before it is handed out
+    public synchronized void addLoadListener(Consumer<User> listener) {
+        loadListeners.add(listener);
+    }
+
+    @Override
+    public synchronized int size() {
+        return summaries.size();
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return summaries.containsKey(key);
+    }
+
+    @Override
+    public synchronized User get(Object key) {
+        Summary summary = summaries.get(key);
+        if (summary == null) {
+            return null;
+        }
+        User user = inMemory(summary.userId);
+        if (user == null) {
+            user = load(summary);
+            if (user == null) {
+                return null;
+            }
+            cache.put(summary.userId, user);
+            loaded.put(summary.userId, new UserReference(user, collected));
+        }
+        if (pinOnAccess) {
+            pin(user);
+        }
+        return user;
+    }
+
+    // Returns the previous user only if it was in memory; the shard is not read for it
+    @Override
+    public synchronized User put(String key, User user) {
+        User previous = inMemory(key);
+        Summary old = summaries.get(key);
+        summaries.put(key, new Summary(key, user.getRole(), DataManager.shardOf(key), user.getEmail(),
+                user.getName(), user.getPhoneNumber(), old != null ? old.offset : -1));
+        cache.remove(key);
+        pinned.put(key, user);
+        loaded.put(key, new UserReference(user, collected));
+        return previous;
+    }
+
+    @Override
+    public synchronized User remove(Object key) {
+        User previous = inMemory(key);
+        summaries.remove(key);
+        pinned.remove(key);
+        cache.remove(key);
+        loaded.remove(key);
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        summaries.clear();
+        pinned.clear();
+        cache.clear();
+        loaded.clear();
+        shardReaders.clear();
+        cleared = true;
+    }
+
+    // Iteration walks the summaries and loads each user as it is reached
+    @Override
+    public Set<Map.Entry<String, User>> entrySet() {
+        return new AbstractSet<Map.Entry<String, User>>() {
+            @Override
+            public Iterator<Map.Entry<String, User>> iterator() {
+                List<String> ids;
+                synchronized (LazyUserMap.this) {
+                    ids = new ArrayList<>(summaries.keySet());
+                }
+                Iterator<String> idIterator = ids.iterator();
+                return new Iterator<Map.Entry<String, User>>() {
+                    private Map.Entry<String, User> next = advance();
+                    private String last;
+
+                    private Map.Entry<String, User> advance() {
+                        while (idIterator.hasNext()) {
+                            String id = idIterator.next();
+                            User user = get(id);
+                            if (user != null) {
+                                return new SimpleImmutableEntry<>(id, user);
+                            }
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public Map.Entry<String, User> next() {
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String, User> current = next;
+                        last = current.getKey();
+                        next = advance();
+                        return current;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        LazyUserMap.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LazyUserMap.this.size();
+            }
+        };
+    }
+
+    // Keep a changed user in memory until its shard has been rewritten
+    public synchronized void pin(String userId) {
+        User user = get(userId);
+        if (user != null) {
+            pin(user);
+        }
+    }
+
+    private void pin(User user) {
+        String userId = user.getUserId();
+        cache.remove(userId);
+        pinned.put(userId, user);
+        Summary summary = summaries.get(userId);
+        if (summary != null) {
+            summary.email = user.getEmail();
+            summary.name = user.getName();
+            summary.phone = user.getPhoneNumber();
+        }
+    }
+
+    // Let pinned users of shards that are fully written go back to the bounded cache
+    public synchronized void unpinWhere(IntPredicate cleanShard) {
+        Iterator<Map.Entry<String, User>> it = pinned.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, User> entry = it.next();
+            if (cleanShard.test(DataManager.shardOf(entry.getKey()))) {
+                it.remove();
+                cache.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public synchronized void setPinOnAccess(boolean pinOnAccess) {
+        this.pinOnAccess = pinOnAccess;
+    }
+
+    public synchronized Set<String> getPinnedIds() {
+        return new HashSet<>(pinned.keySet());
+    }
+
+    // True once if clear() was called since the last check
+    public synchronized boolean consumeCleared() {
+        boolean wasCleared = cleared;
+        cleared = false;
+        return wasCleared;
+    }
+
+    public synchronized void forEachLoaded(Consumer<User> action) {
+        Set<User> users = Collections.newSetFromMap(new IdentityHashMap<>());
+        users.addAll(pinned.values());
+        users.addAll(cache.values());
+        users.forEach(action);
+    }
+
+    // A frozen view for writing a snapshot: the same summaries, plus every user held in memory
+    public synchronized LazyUserMap copy() {
+        LazyUserMap copy = new LazyUserMap(new HashMap<>(summaries), shardFiles, 0);
+        copy.pinned.putAll(cache);
+        copy.pinned.putAll(pinned);
+        return copy;
+    }
+
+    // Every current user of a shard: the in-memory instance if there is one, otherwise
+    // the record from the shard file as it is now, passed through the load listeners
+    // like any other load
+    public synchronized List<User> loadShard(int shard) throws IOException {
+        Map<String, User> onDisk = new HashMap<>();
+        File file = shardFiles.apply(shard);
+        if (file.exists()) {
+            for (User user : UserCodec.decode(Files.readAllBytes(file.toPath()))) {
+                onDisk.put(user.getUserId(), user);
+            }
+        }
+
+        List<User> users = new ArrayList<>();
+        for (Summary summary : summaries.values()) {
+            if (summary.shard != shard) {
+                continue;
+            }
+            User user = inMemory(summary.userId);
+            if (user == null) {
+                user = onDisk.get(summary.userId);
+                if (user == null) {
+                    throw new IOException("User " + summary.userId + " missing from " + file.getName());
+                }
+                for (Consumer<User> listener : loadListeners) {
+                    listener.accept(user);
+                }
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    // A shard file was replaced; record where each user's record now starts
+    public synchronized void shardWritten(int shard, List<String> userIds, int[] offsets) {
+        shardReaders.remove(shard);
+        for (int i = 0; i < userIds.size(); i++) {
+            Summary summary = summaries.get(userIds.get(i));
+            if (summary != null && summary.shard == shard) {
+                summary.offset = offsets[i];
+            }
+        }
+    }
+
+    // Index queries answered from summaries alone
+    public synchronized void forEachSummary(Consumer<Summary> action) {
+        summaries.values().forEach(action);
+    }
+
+    public synchronized int getPinnedCount() { return pinned.size(); }
+    public synchronized int getCachedCount() { return cache.size(); }
+    public synchronized long getLoadCount() { return loads; }
+
+    private User inMemory(Object userId) {
+        drainCollected();
+        User user = pinned.get(userId);
+        if (user == null) {
+            user = cache.get(userId);
+        }
+        if (user == null) {
+            UserReference reference = loaded.get(userId);
+            user = reference != null ? reference.get() : null;
+            if (user != null) {
+                cache.put(user.getUserId(), user);
+            }
+        }
+        return user;
+    }
+
+    private User load(Summary summary) {
+        if (summary.offset < 0) {
+            System.err.println("Error loading user " + summary.userId + ": no stored record");
+            return null;
+        }
+        try {
+            UserCodec.Reader reader = shardReaders.get(summary.shard);
+            if (reader == null) {
+                reader = new UserCodec.Reader(Files.readAllBytes(shardFiles.apply(summary.shard).toPath()));
+                shardReaders.put(summary.shard, reader);
+            }
+            User user = reader.readUserAt(summary.offset);
+            if (!summary.userId.equals(user.getUserId())) {
+                throw new IOException("index out of date for shard " + summary.shard);
+            }
+            loads++;
+            for (Consumer<User> listener : loadListeners) {
+                listener.accept(user);
+            }
+            return user;
+        } catch (IOException e) {
+            System.err.println("Error loading user " + summary.userId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void drainCollected() {
+        UserReference reference;
+        while ((reference = (UserReference) collected.poll()) != null) {
+            if (loaded.get(reference.userId) == reference) {
+                loaded.remove(reference.userId);
+            }
+        }
+    }
+}
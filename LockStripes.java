@@ -0,0 +1,50 @@
+// LockStripes.java - A fixed set of locks shared out by key hash, for per-user locking
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class LockStripes {
+    // Keys hash onto a fixed number of reentrant locks, so any number of users costs the
+    // same memory and two keys rarely share a lock. Several keys are always locked in
+    // stripe order, which keeps two callers locking overlapping sets from deadlocking.
+    // A caller that already holds stripes must not lock a new one outside that order,
+    // so compound operations name every key they will need up front.
+
+    // Held stripes; closing releases them
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ReentrantLock[] locks;
+
+    public LockStripes(int count) {
+        locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private int stripeOf(String key) {
+        return Math.floorMod(key.hashCode() * 0x9E3779B9, locks.length);
+    }
+
+    // Lock the stripes of all non-null keys
+    public Held lock(String... keys) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (String key : keys) {
+            if (key != null) {
+                stripes.add(stripeOf(key));
+            }
+        }
+        List<ReentrantLock> held = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            held.add(locks[stripe]);
+        }
+        return () -> {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        };
+    }
+}
@@ -1,12 +1,17 @@
 // Member.java - Member Class extending User
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.time.LocalDate;
 
 public class Member extends User {
+    // Matches the value computed for earlier releases so old users.dat files can be migrated
+    private static final long serialVersionUID = -7216911231102567809L;
+
     private String membershipType;
-    private String joinDate;
-    private String membershipExpiry;
+    private int joinDay;   // epoch day, GymDates.NO_DATE if unknown
+    private int expiryDay; // epoch day, GymDates.NO_DATE if unknown
     private String fitnessGoal;
     private String assignedTrainerId;
     private List<String> workoutHistory;
@@ -23,8 +28,8 @@ public class Member extends User {
                   String membershipType, String joinDate, String membershipExpiry, String fitnessGoal) {
         super(userId, name, email, password, "MEMBER");
         this.membershipType = membershipType;
-        this.joinDate = joinDate;
-        this.membershipExpiry = membershipExpiry;
+        this.joinDay = GymDates.parseDate(joinDate);
+        this.expiryDay = GymDates.parseDate(membershipExpiry);
         this.fitnessGoal = fitnessGoal;
         this.workoutHistory = new ArrayList<>();
         this.attendanceHistory = new ArrayList<>();
@@ -37,16 +42,20 @@ public class Member extends User {
         this.medicalConditions = "None";
     }
 
+    Member() {
+        super("MEMBER");
+    }
+
     @Override
     public void displayDashboard() {
         System.out.println(GymUI.BOLD + GymUI.CYAN + "\n╔══════════════════════════════════════════════════════════════════════╗");
         System.out.println("║                           MEMBER DASHBOARD                          ║");
         System.out.println("╚══════════════════════════════════════════════════════════════════════╝" + GymUI.RESET);
         System.out.println(GymUI.GREEN + "Welcome back, " + name + "! 👋" + GymUI.RESET);
-        System.out.println("📋 Membership: " + GymUI.YELLOW + membershipType + GymUI.RESET + " (Expires: " + membershipExpiry + ")");
+        System.out.println("📋 Membership: " + GymUI.YELLOW + membershipType + GymUI.RESET + " (Expires: " + getMembershipExpiry() + ")");
         System.out.println("🎯 Fitness Goal: " + fitnessGoal);
         System.out.println("💳 Total Payments: $" + totalPayments);
-        System.out.println("📅 Member Since: " + joinDate);
+        System.out.println("📅 Member Since: " + getJoinDate());
 
         if (assignedTrainerId != null) {
             System.out.println("👨‍🏫 Assigned Trainer ID: " + GymUI.CYAN + assignedTrainerId + GymUI.RESET);
@@ -76,7 +85,7 @@ public class Member extends User {
         System.out.println("   📞 Phone: " + (phoneNumber.isEmpty() ? "Not provided" : phoneNumber));
         System.out.println("   🏠 Address: " + (address.isEmpty() ? "Not provided" : address));
         System.out.println("   🎫 Membership: " + membershipType);
-        System.out.println("   📅 Joined: " + joinDate + " | Expires: " + membershipExpiry);
+        System.out.println("   📅 Joined: " + getJoinDate() + " | Expires: " + getMembershipExpiry());
         System.out.println("   🎯 Goal: " + fitnessGoal);
         System.out.println("   💳 Total Payments: $" + totalPayments);
         System.out.println("   ⚖️ Weight: " + (weight > 0 ? weight + " kg" : "Not recorded"));
@@ -117,24 +126,25 @@ public class Member extends User {
     }
 
     public boolean isMembershipExpired() {
-        try {
-            LocalDate expiryDate = LocalDate.parse(membershipExpiry);
-            return LocalDate.now().isAfter(expiryDate);
-        } catch (Exception e) {
-            return false;
-        }
+        return expiryDay != GymDates.NO_DATE && GymDates.today() > expiryDay;
     }
 
     public void renewMembership(String newExpiryDate, double paymentAmount) {
-        this.membershipExpiry = newExpiryDate;
+        renewMembership(GymDates.parseDate(newExpiryDate), paymentAmount);
+    }
+
+    public void renewMembership(int newExpiryDay, double paymentAmount) {
+        this.expiryDay = newExpiryDay;
         this.totalPayments += paymentAmount;
         setActive(true);
     }
 
     // Getters and Setters
     public String getMembershipType() { return membershipType; }
-    public String getJoinDate() { return joinDate; }
-    public String getMembershipExpiry() { return membershipExpiry; }
+    public String getJoinDate() { return GymDates.formatDate(joinDay); }
+    public String getMembershipExpiry() { return GymDates.formatDate(expiryDay); }
+    public int getJoinDay() { return joinDay; }
+    public int getExpiryDay() { return expiryDay; }
     public String getFitnessGoal() { return fitnessGoal; }
     public String getAssignedTrainerId() { return assignedTrainerId; }
     public List<String> getWorkoutHistory() { return workoutHistory; }
@@ -148,7 +158,8 @@ public class Member extends User {
     public String getMedicalConditions() { return medicalConditions; }
 
     public void setMembershipType(String membershipType) { this.membershipType = membershipType; }
-    public void setMembershipExpiry(String membershipExpiry) { this.membershipExpiry = membershipExpiry; }
+    public void setMembershipExpiry(String membershipExpiry) { this.expiryDay = GymDates.parseDate(membershipExpiry); }
+    public void setExpiryDay(int expiryDay) { this.expiryDay = expiryDay; }
     public void setFitnessGoal(String fitnessGoal) { this.fitnessGoal = fitnessGoal; }
     public void setAssignedTrainerId(String assignedTrainerId) { this.assignedTrainerId = assignedTrainerId; }
     public void setTotalPayments(double totalPayments) { this.totalPayments = totalPayments; }
@@ -159,6 +170,74 @@ public class Member extends User {
     public void setHeight(double height) { this.height = height; }
     public void setMedicalConditions(String medicalConditions) { this.medicalConditions = medicalConditions; }
 
+    @Override
+    protected void writeFields(UserCodec.Writer out) {
+        super.writeFields(out);
+        out.writeString(membershipType);
+        out.writeDate(joinDay);
+        out.writeDate(expiryDay);
+        out.writeString(fitnessGoal);
+        out.writeString(assignedTrainerId);
+        out.writeStringList(workoutHistory);
+        out.writeStringList(attendanceHistory);
+        out.writeDouble(totalPayments);
+        out.writeString(phoneNumber);
+        out.writeString(address);
+        out.writeString(emergencyContact);
+        out.writeDouble(weight);
+        out.writeDouble(height);
+        out.writeString(medicalConditions);
+    }
+
+    @Override
+    protected void readFields(UserCodec.Reader in) throws IOException {
+        super.readFields(in);
+        membershipType = in.readString();
+        if (in.getVersion() < 2) {
+            joinDay = GymDates.parseDate(in.readString());
+            expiryDay = GymDates.parseDate(in.readString());
+        } else {
+            joinDay = in.readDate();
+            expiryDay = in.readDate();
+        }
+        fitnessGoal = in.readString();
+        assignedTrainerId = in.readString();
+        workoutHistory = in.readStringList();
+        attendanceHistory = in.readStringList();
+        totalPayments = in.readDouble();
+        phoneNumber = in.readString();
+        address = in.readString();
+        emergencyContact = in.readString();
+        weight = in.readDouble();
+        height = in.readDouble();
+        medicalConditions = in.readString();
+    }
+
+    // Legacy Java serialization, see User.readObject
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        membershipType = (String) fields.get("membershipType", null);
+        fitnessGoal = (String) fields.get("fitnessGoal", null);
+        assignedTrainerId = (String) fields.get("assignedTrainerId", null);
+        workoutHistory = (List<String>) fields.get("workoutHistory", null);
+        attendanceHistory = (List<String>) fields.get("attendanceHistory", null);
+        totalPayments = fields.get("totalPayments", 0.0);
+        phoneNumber = (String) fields.get("phoneNumber", null);
+        address = (String) fields.get("address", null);
+        emergencyContact = (String) fields.get("emergencyContact", null);
+        weight = fields.get("weight", 0.0);
+        height = fields.get("height", 0.0);
+        medicalConditions = (String) fields.get("medicalConditions", null);
+        if (fields.defaulted("joinDay")) {
+            joinDay = GymDates.parseDate((String) fields.get("joinDate", null));
+            expiryDay = GymDates.parseDate((String) fields.get("membershipExpiry", null));
+        } else {
+            joinDay = fields.get("joinDay", GymDates.NO_DATE);
+            expiryDay = fields.get("expiryDay", GymDates.NO_DATE);
+        }
+    }
+
     public void addWorkout(String workout) {
         workoutHistory.add(LocalDate.now() + ": " + workout);
     }
@@ -0,0 +1,118 @@
+// PrefixIndex.java - Sorted prefix index over user names and ids for type-ahead lookups
+import java.text.Normalizer;
+import java.util.*;
+
+public class PrefixIndex {
+    // Each role has a sorted set of "key \0 userId" entries, where the keys of a user are
+    // its normalized id, full name, and the name from each later word on ("smith" finds
+    // "John Smith"). A prefix is one range of that set; the matches in the range are then
+    // ranked by last login, most recent first, keeping only the top k.
+    private static final char SEPARATOR = '\0';
+
+    private static class Entry {
+        final String role;
+        final List<String> keys;
+        long lastLogin; // GymDates timestamp, NEVER sorts last
+
+        Entry(String role, List<String> keys, long lastLogin) {
+            this.role = role;
+            this.keys = keys;
+            this.lastLogin = lastLogin;
+        }
+    }
+
+    private final Map<String, TreeSet<String>> byRole = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    // Lowercase, accents removed, whitespace collapsed
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized void put(String userId, String role, String name, long lastLogin) {
+        List<String> keys = keysFor(userId, name);
+        Entry old = entries.get(userId);
+        if (old != null && old.role.equals(role) && old.keys.equals(keys)) {
+            old.lastLogin = lastLogin;
+            return;
+        }
+        remove(userId);
+        TreeSet<String> sorted = byRole.computeIfAbsent(role, r -> new TreeSet<>());
+        for (String key : keys) {
+            sorted.add(key + SEPARATOR + userId);
+        }
+        entries.put(userId, new Entry(role, keys, lastLogin));
+    }
+
+    // Record a login; the ranking reads it at query time, so nothing is re-sorted
+    public synchronized void touch(String userId, long lastLogin) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            entry.lastLogin = lastLogin;
+        }
+    }
+
+    public synchronized void remove(String userId) {
+        Entry entry = entries.remove(userId);
+        if (entry != null) {
+            TreeSet<String> sorted = byRole.get(entry.role);
+            for (String key : entry.keys) {
+                sorted.remove(key + SEPARATOR + userId);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        byRole.clear();
+        entries.clear();
+    }
+
+    // Up to limit ids of the role whose id or name (or a later word of it) starts with
+    // the prefix, most recently logged in first
+    public synchronized List<String> complete(String role, String prefix, int limit) {
+        String key = normalize(prefix);
+        TreeSet<String> sorted = byRole.get(role);
+        if (key.isEmpty() || sorted == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Comparator<String> ranking = (a, b) -> {
+            int byLogin = Long.compare(entries.get(a).lastLogin, entries.get(b).lastLogin);
+            return byLogin != 0 ? byLogin : b.compareTo(a);
+        };
+        // Min-heap of the best so far; its head is the weakest kept match
+        PriorityQueue<String> best = new PriorityQueue<>(limit + 1, ranking);
+        Set<String> seen = new HashSet<>();
+        for (String match : sorted.subSet(key, key + Character.MAX_VALUE)) {
+            String userId = match.substring(match.indexOf(SEPARATOR) + 1);
+            if (!seen.add(userId)) {
+                continue;
+            }
+            best.add(userId);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<String> ranked = new ArrayList<>(best);
+        ranked.sort(ranking.reversed());
+        return ranked;
+    }
+
+    private static List<String> keysFor(String userId, String name) {
+        List<String> keys = new ArrayList<>();
+        keys.add(normalize(userId));
+        String normalizedName = normalize(name);
+        if (!normalizedName.isEmpty()) {
+            keys.add(normalizedName);
+            for (int space = normalizedName.indexOf(' '); space >= 0; space = normalizedName.indexOf(' ', space + 1)) {
+                keys.add(normalizedName.substring(space + 1));
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,95 @@
+// RoleIndex.java - User ids partitioned by role, each role kept in name order
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+
+public class RoleIndex {
+    // Each role's ids are kept sorted as users come and go, ordered by a collation key
+    // computed once per name change, so listings never sort and counts are a size().
+    // The id list handed out is cached until the role changes again.
+    private static class SortKey implements Comparable<SortKey> {
+        final CollationKey name; // null sorts last
+        final String userId;
+
+        SortKey(CollationKey name, String userId) {
+            this.name = name;
+            this.userId = userId;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            if (name == null || other.name == null) {
+                if (name != other.name) {
+                    return name == null ? 1 : -1;
+                }
+            } else {
+                int byName = name.compareTo(other.name);
+                if (byName != 0) {
+                    return byName;
+                }
+            }
+            return userId.compareTo(other.userId);
+        }
+    }
+
+    private final Collator collator = Collator.getInstance(Locale.ROOT);
+    private final Map<String, String> roles = new HashMap<>();        // userId -> role
+    private final Map<String, SortKey> sortKeys = new HashMap<>();    // userId -> key
+    private final Map<String, TreeSet<SortKey>> byRole = new HashMap<>();
+    private final Map<String, List<String>> views = new HashMap<>();  // role -> cached ids
+
+    public RoleIndex() {
+        // Case-insensitive, like the listings always were
+        collator.setStrength(Collator.SECONDARY);
+    }
+
+    public synchronized void put(String userId, String role, String name) {
+        SortKey old = sortKeys.get(userId);
+        if (old != null && role.equals(roles.get(userId))
+                && Objects.equals(old.name != null ? old.name.getSourceString() : null, name)) {
+            return; // unchanged; keep the cached view
+        }
+        remove(userId);
+        SortKey key = new SortKey(name != null ? collator.getCollationKey(name) : null, userId);
+        roles.put(userId, role);
+        sortKeys.put(userId, key);
+        byRole.computeIfAbsent(role, r -> new TreeSet<>()).add(key);
+        views.remove(role);
+    }
+
+    public synchronized void remove(String userId) {
+        String role = roles.remove(userId);
+        SortKey key = sortKeys.remove(userId);
+        if (role != null) {
+            byRole.get(role).remove(key);
+            views.remove(role);
+        }
+    }
+
+    public synchronized void clear() {
+        roles.clear();
+        sortKeys.clear();
+        byRole.clear();
+        views.clear();
+    }
+
+    public synchronized int count(String role) {
+        TreeSet<SortKey> keys = byRole.get(role);
+        return keys != null ? keys.size() : 0;
+    }
+
+    // Ids of the role's users in name order; the list is shared and must not be modified
+    public synchronized List<String> sortedIds(String role) {
+        List<String> view = views.get(role);
+        if (view == null) {
+            TreeSet<SortKey> keys = byRole.getOrDefault(role, new TreeSet<>());
+            List<String> ids = new ArrayList<>(keys.size());
+            for (SortKey key : keys) {
+                ids.add(key.userId);
+            }
+            view = Collections.unmodifiableList(ids);
+            views.put(role, view);
+        }
+        return view;
+    }
+}
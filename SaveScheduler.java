@@ -0,0 +1,89 @@
+// SaveScheduler.java - Write-behind scheduler that coalesces saves
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SaveScheduler {
+    private static final long DEFAULT_DELAY_MS = 500;
+
+    private final Runnable flushAction;
+    private final long delayMs;
+    private final ScheduledExecutorService executor;
+    private final Object flushLock = new Object();
+
+    private ScheduledFuture<?> scheduledFlush;
+    private long pendingChanges;
+    private boolean closed;
+
+    private final AtomicLong requestedWrites = new AtomicLong();
+    private final AtomicLong completedFlushes = new AtomicLong();
+    private final AtomicLong coalescedWrites = new AtomicLong();
+
+    public SaveScheduler(Runnable flushAction) {
+        this(flushAction, Long.getLong("gym.save.delayMs", DEFAULT_DELAY_MS));
+    }
+
+    public SaveScheduler(Runnable flushAction, long delayMs) {
+        this.flushAction = flushAction;
+        this.delayMs = delayMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gym-save-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Record a change; the first change in a quiet period schedules a flush delayMs later
+    // and every change until then rides along with it. Once closed there is nothing left
+    // to write to, so later changes are ignored rather than failing their callers.
+    public synchronized void markDirty() {
+        if (closed) {
+            return;
+        }
+        requestedWrites.incrementAndGet();
+        pendingChanges++;
+        if (scheduledFlush == null) {
+            scheduledFlush = executor.schedule(this::flushScheduled, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Write pending changes now; returns once they are durable
+    public void flush() {
+        synchronized (flushLock) {
+            long changes;
+            synchronized (this) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+                changes = pendingChanges;
+                pendingChanges = 0;
+            }
+            if (changes > 0) {
+                flushAction.run();
+                completedFlushes.incrementAndGet();
+                coalescedWrites.addAndGet(changes - 1);
+            }
+        }
+    }
+
+    private void flushScheduled() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Error flushing data: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        executor.shutdown();
+    }
+
+    public long getDelayMs() { return delayMs; }
+    public long getRequestedWrites() { return requestedWrites.get(); }
+    public long getCompletedFlushes() { return completedFlushes.get(); }
+    public long getCoalescedWrites() { return coalescedWrites.get(); }
+}
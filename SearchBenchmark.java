@@ -0,0 +1,96 @@
+// SearchBenchmark.java - Trigram index search against the linear scan searchUsers used to do
+// Run with: java -Xmx2g SearchBenchmark [users]   (default 500000; both must return the same users)
+import java.util.*;
+
+public class SearchBenchmark {
+    private static final String[] FIRST = { "John", "Maria", "Ahmed", "Li", "Sofia", "Rahul", "Emma", "Lucas", "Aisha", "Noah" };
+    private static final String[] LAST = { "Smith", "Garcia", "Khan", "Chen", "Rossi", "Das", "Brown", "Silva", "Okafor", "Saha" };
+    private static final String[] TYPES = { "Basic", "Premium", "VIP" };
+    private static final String[] GOALS = { "Weight Loss", "Strength", "Endurance", "Flexibility", "General Fitness" };
+    private static final String[] SPECIALIZATIONS = { "Yoga", "CrossFit", "Boxing", "Pilates", "Powerlifting" };
+    private static final int RUNS = 21;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        List<User> users = generate(count);
+
+        long start = System.nanoTime();
+        TrigramIndex index = new TrigramIndex();
+        for (User user : users) {
+            index.put(user.getUserId(), fields(user));
+        }
+        System.out.printf("%,d users indexed in %d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+
+        // From a single match to most of the users, plus terms below trigram length
+        String[] terms = { "M0123456", "okafor", "john smith", "boxing", "@gym", "vip", "sa", "x" };
+        System.out.printf("%-12s %9s %14s %14s %9s%n", "term", "matches", "index p50 ms", "scan p50 ms", "speedup");
+        boolean same = true;
+        for (String term : terms) {
+            Set<String> indexed = new HashSet<>(index.search(term));
+            Set<String> scanned = new HashSet<>(linearScan(users, term));
+            same &= indexed.equals(scanned);
+            double indexMs = medianMillis(() -> index.search(term));
+            double scanMs = medianMillis(() -> linearScan(users, term));
+            System.out.printf("%-12s %,9d %14.3f %14.3f %8.0fx%n", term, indexed.size(), indexMs, scanMs, scanMs / indexMs);
+        }
+        System.out.println(same ? "PASS: index and scan agree on every term" : "FAIL: index and scan disagree");
+        System.exit(same ? 0 : 1);
+    }
+
+    private static List<User> generate(int count) {
+        Random random = new Random(42);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)];
+            String email = name.toLowerCase().replace(' ', '.') + i + "@gym.com";
+            if (i % 50 == 0) {
+                users.add(new Trainer(String.format("T%07d", i), name, email, "password1",
+                        SPECIALIZATIONS[random.nextInt(SPECIALIZATIONS.length)], "5 years", 40.0, 20));
+            } else {
+                users.add(new Member(String.format("M%07d", i), name, email, "password1", TYPES[random.nextInt(TYPES.length)],
+                        "2026-01-01", "2027-01-01", GOALS[random.nextInt(GOALS.length)]));
+            }
+        }
+        return users;
+    }
+
+    // The fields searchUsers matches on
+    private static List<String> fields(User user) {
+        List<String> fields = new ArrayList<>(Arrays.asList(user.getUserId(), user.getName(), user.getEmail()));
+        if (user instanceof Member) {
+            fields.add(((Member) user).getMembershipType());
+            fields.add(((Member) user).getFitnessGoal());
+        } else if (user instanceof Trainer) {
+            fields.add(((Trainer) user).getSpecialization());
+        } else if (user instanceof Admin) {
+            fields.add(((Admin) user).getAdminLevel());
+        }
+        return fields;
+    }
+
+    // What searchUsers did before the index: lowercase every field of every user
+    private static List<String> linearScan(List<User> users, String term) {
+        String lowerTerm = term.toLowerCase();
+        List<String> matches = new ArrayList<>();
+        for (User user : users) {
+            for (String field : fields(user)) {
+                if (field != null && field.toLowerCase().contains(lowerTerm)) {
+                    matches.add(user.getUserId());
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static double medianMillis(Runnable search) {
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            search.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2] / 1_000_000.0;
+    }
+}
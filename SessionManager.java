@@ -0,0 +1,103 @@
+// SessionManager.java - Logged-in sessions by opaque token, with idle expiry
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+public class SessionManager {
+    // Every session gets a random token and is found by it in one map lookup. A session
+    // not used for the idle timeout is ended the next time it is looked up, or by the
+    // sweeper, whichever comes first; either way the expiry callback runs once.
+    private static final long DEFAULT_IDLE_MINUTES = 30;
+    private static final long MAX_SWEEP_INTERVAL_MS = 60_000;
+
+    private final Map<String, UserSession> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long idleTimeoutMs;
+    private final Consumer<UserSession> onExpire;
+    private final ScheduledExecutorService sweeper;
+
+    public SessionManager(Consumer<UserSession> onExpire) {
+        this(onExpire, TimeUnit.MINUTES.toMillis(Long.getLong("gym.session.idleMinutes", DEFAULT_IDLE_MINUTES)));
+    }
+
+    public SessionManager(Consumer<UserSession> onExpire, long idleTimeoutMs) {
+        this.onExpire = onExpire;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gym-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, Math.min(idleTimeoutMs, MAX_SWEEP_INTERVAL_MS));
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public UserSession open(User user) {
+        byte[] tokenBytes = new byte[24];
+        random.nextBytes(tokenBytes);
+        UserSession session = new UserSession(user, Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes));
+        sessions.put(session.getToken(), session);
+        return session;
+    }
+
+    // The open session for a token, marked as used; null if unknown, ended or idle too long
+    public UserSession get(String token) {
+        if (token == null) {
+            return null;
+        }
+        UserSession session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - session.getLastAccess() > idleTimeoutMs) {
+            expire(session);
+            return null;
+        }
+        session.touch(now);
+        return session;
+    }
+
+    // Returns false if the session had already ended
+    public boolean end(UserSession session) {
+        if (session == null || !sessions.remove(session.getToken(), session)) {
+            return false;
+        }
+        session.close();
+        return true;
+    }
+
+    private void expire(UserSession session) {
+        if (end(session)) {
+            onExpire.accept(session);
+        }
+    }
+
+    private void sweep() {
+        try {
+            long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+            for (UserSession session : sessions.values()) {
+                if (session.getLastAccess() < cutoff) {
+                    expire(session);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error expiring sessions: " + e.getMessage());
+        }
+    }
+
+    // End every session without the expiry callback, for when the data underneath is replaced
+    public void closeAll() {
+        for (UserSession session : sessions.values()) {
+            end(session);
+        }
+    }
+
+    public int size() { return sessions.size(); }
+    public long getIdleTimeoutMs() { return idleTimeoutMs; }
+
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
@@ -0,0 +1,93 @@
+// SnapshotCompactor.java - Background snapshots and journal compaction
+import java.util.*;
+import java.util.concurrent.*;
+
+public class SnapshotCompactor {
+    private static final long DEFAULT_INTERVAL_SECONDS = 300;
+    private static final int MAX_ATTEMPTS = 3;
+
+    // Maps copied at the moment the journal segment was sealed
+    static class Capture {
+        final Map<String, User> users;
+        final Map<String, String> assignments;
+        final long journalSegment;
+
+        Capture(Map<String, User> users, Map<String, String> assignments, long journalSegment) {
+            this.users = users;
+            this.assignments = assignments;
+            this.journalSegment = journalSegment;
+        }
+    }
+
+    private final UserManager userManager;
+    private final DataManager dataManager;
+    private final long intervalSeconds;
+    private final Object compactionLock = new Object();
+    private ScheduledExecutorService executor;
+
+    public SnapshotCompactor(UserManager userManager, DataManager dataManager) {
+        this.userManager = userManager;
+        this.dataManager = dataManager;
+        this.intervalSeconds = Long.getLong("gym.compaction.intervalSeconds", DEFAULT_INTERVAL_SECONDS);
+    }
+
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gym-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::compactIfNeeded, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            DataJournal journal = dataManager.getJournal();
+            if (journal != null && journal.getRecordCount() > 0) {
+                compactNow();
+            }
+        } catch (Exception e) {
+            // Never let a failure cancel the schedule; the segments stay until the next run
+            System.err.println("Error compacting data: " + e.getMessage());
+        }
+    }
+
+    // Only the capture runs under the UserManager lock; serializing and writing the
+    // snapshot happens on this thread while logins and assignments carry on.
+    public boolean compactNow() {
+        synchronized (compactionLock) {
+            Capture capture = userManager.captureSnapshot();
+            if (capture == null) {
+                return false;
+            }
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                try {
+                    boolean written = dataManager.writeSnapshot(capture.users, capture.assignments, capture.journalSegment);
+                    if (written) {
+                        userManager.releaseCleanUsers();
+                    }
+                    return written;
+                } catch (ConcurrentModificationException e) {
+                    // A user's lists changed while being serialized; try again
+                }
+            }
+            System.err.println("Error compacting data: users kept changing during snapshot");
+            return false;
+        }
+    }
+
+    public long getLastSnapshotTime() { return dataManager.getSnapshotTime(); }
+    public long getLastSnapshotBytes() { return dataManager.getSnapshotBytes(); }
+}
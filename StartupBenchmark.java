@@ -0,0 +1,103 @@
+// StartupBenchmark.java - Startup time, and relationship restore in particular, as the member count grows
+// Run with: java StartupBenchmark [members,members,...]   (default 10000,20000,40000,80000; each size
+// is seeded and started in its own JVM in a temporary directory; -Dgym.* options are passed on)
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class StartupBenchmark {
+    private static final int CLIENTS_PER_TRAINER = 40;
+    private static final int STARTS = 5;
+    private static final String RESULT = "RESULT ";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1) {
+            runPhase(args[0], Integer.parseInt(args[1]));
+            return;
+        }
+
+        String sizes = args.length > 0 ? args[0] : "10000,20000,40000,80000";
+        System.out.printf("%9s %9s %12s %12s %12s %18s%n", "members", "trainers", "restore ms", "indexes ms", "startup ms",
+                "restore us/member");
+        for (String size : sizes.split(",")) {
+            int members = Integer.parseInt(size.trim());
+            File dir = Files.createTempDirectory("gym-startup").toFile();
+            runChild(dir, "seed", members);
+            long[] restore = new long[STARTS];
+            long[] indexes = new long[STARTS];
+            long[] total = new long[STARTS];
+            for (int i = 0; i < STARTS; i++) {
+                String[] timings = runChild(dir, "start", members).split(" ");
+                restore[i] = Long.parseLong(timings[0]);
+                indexes[i] = Long.parseLong(timings[1]);
+                total[i] = Long.parseLong(timings[2]);
+            }
+            Arrays.sort(restore);
+            Arrays.sort(indexes);
+            Arrays.sort(total);
+            long medianRestore = restore[STARTS / 2];
+            System.out.printf("%,9d %,9d %12d %12d %12d %18.2f%n", members, members / CLIENTS_PER_TRAINER, medianRestore,
+                    indexes[STARTS / 2], total[STARTS / 2], medianRestore * 1000.0 / members);
+            deleteRecursively(dir);
+        }
+    }
+
+    // Runs a phase in a fresh JVM and returns what it reported
+    private static String runChild(File dir, String phase, int members) throws Exception {
+        List<String> command = JournalRecoveryTest.childCommand(StartupBenchmark.class, phase, String.valueOf(members));
+        Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+        String result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT)) {
+                    result = line.substring(RESULT.length());
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("phase '" + phase + "' failed for " + members + " members");
+        }
+        return result;
+    }
+
+    private static void runPhase(String phase, int members) {
+        UserManager userManager = new UserManager();
+        if (phase.equals("seed")) {
+            int trainers = members / CLIENTS_PER_TRAINER;
+            for (int t = 0; t < trainers; t++) {
+                userManager.registerTrainer(String.format("T%06d", t), "Trainer " + t, "trainer" + t + "@gym.com",
+                        "password1", "Strength", "5 years", 40.0, CLIENTS_PER_TRAINER);
+            }
+            for (int m = 0; m < members; m++) {
+                String memberId = String.format("M%07d", m);
+                userManager.registerMember(memberId, "Member " + m, "member" + m + "@gym.com", "password1",
+                        "Premium", "2026-01-01", "2027-01-01", "Strength");
+                if (trainers > 0) {
+                    userManager.assignTrainerToMember(memberId, String.format("T%06d", m % trainers));
+                }
+            }
+            userManager.shutdown();
+            System.out.println(RESULT + "seeded");
+        } else {
+            Map<String, Long> timings = userManager.getStartupTimings();
+            System.out.println(RESULT + timings.get("Restore relationships") + " " + timings.get("Build indexes") + " "
+                    + timings.get("Total startup"));
+        }
+        System.exit(0);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
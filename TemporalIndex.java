@@ -0,0 +1,71 @@
+// TemporalIndex.java - User ids ordered by a date, for range queries by day
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class TemporalIndex {
+    // Users are bucketed by epoch day in a skip list, so a range of days is one subMap
+    // walk: O(log n + k). A user with no date (GymDates.NO_DATE) is left out.
+    private final ConcurrentSkipListMap<Integer, Set<String>> byDay = new ConcurrentSkipListMap<>();
+    private final Map<String, Integer> days = new ConcurrentHashMap<>();
+
+    public synchronized void put(String userId, int day) {
+        Integer old = days.get(userId);
+        if (old != null && old == day) {
+            return;
+        }
+        remove(userId);
+        if (day != GymDates.NO_DATE) {
+            byDay.computeIfAbsent(day, d -> ConcurrentHashMap.newKeySet()).add(userId);
+            days.put(userId, day);
+        }
+    }
+
+    public synchronized void remove(String userId) {
+        Integer day = days.remove(userId);
+        if (day != null) {
+            Set<String> ids = byDay.get(day);
+            ids.remove(userId);
+            if (ids.isEmpty()) {
+                byDay.remove(day);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        byDay.clear();
+        days.clear();
+    }
+
+    // Ids with a date in [from, to], earliest first; either bound may be null for open
+    public List<String> between(LocalDate from, LocalDate to) {
+        List<String> ids = new ArrayList<>();
+        for (Set<String> dayIds : range(from, to).values()) {
+            ids.addAll(dayIds);
+        }
+        return ids;
+    }
+
+    // How many ids between would return, without listing them
+    public int count(LocalDate from, LocalDate to) {
+        int count = 0;
+        for (Set<String> dayIds : range(from, to).values()) {
+            count += dayIds.size();
+        }
+        return count;
+    }
+
+    private NavigableMap<Integer, Set<String>> range(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return Collections.emptyNavigableMap();
+        } else if (from != null && to != null) {
+            return byDay.subMap((int) from.toEpochDay(), true, (int) to.toEpochDay(), true);
+        } else if (from != null) {
+            return byDay.tailMap((int) from.toEpochDay(), true);
+        } else if (to != null) {
+            return byDay.headMap((int) to.toEpochDay(), true);
+        }
+        return byDay;
+    }
+}
@@ -1,15 +1,24 @@
 // Trainer.java - Trainer Class extending User
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.time.LocalDate;
 
 public class Trainer extends User {
+    // Matches the value computed for earlier releases so old users.dat files can be migrated
+    private static final long serialVersionUID = 4442932233971108782L;
+    private static final AtomicIntegerFieldUpdater<Trainer> CLIENT_SLOTS =
+            AtomicIntegerFieldUpdater.newUpdater(Trainer.class, "currentClients");
+
     private String specialization;
     private String experience;
-    private String availability;
+    private volatile String availability;
     private double hourlyRate;
-    private int maxClients;
-    private int currentClients;
+    private volatile int maxClients;
+    // Claimed slots; changed only by compare-and-set, so capacity holds without locks
+    private volatile int currentClients;
     private List<String> certifications;
     private List<String> assignedMemberIds;
     private double totalEarnings;
@@ -38,6 +47,10 @@ public class Trainer extends User {
         this.workingHours = "9:00 AM - 6:00 PM";
     }
 
+    Trainer() {
+        super("TRAINER");
+    }
+
     @Override
     public void displayDashboard() {
         System.out.println(GymUI.BOLD + GymUI.YELLOW + "\n╔══════════════════════════════════════════════════════════════════════╗");
@@ -108,27 +121,93 @@ public class Trainer extends User {
         }
     }
 
+    // Client slots are claimed and released by compare-and-set on currentClients, so
+    // desks assigning members to the same trainer at once never overbook it and need no
+    // lock on the trainer. The id list itself is synchronized.
     public boolean canTakeMoreClients() {
         return currentClients < maxClients && isActive();
     }
 
-    public void addClient(String memberId) {
-        if (canTakeMoreClients() && !assignedMemberIds.contains(memberId)) {
-            assignedMemberIds.add(memberId);
-            currentClients++;
-            if (currentClients >= maxClients) {
-                availability = "Fully Booked";
+    // Claim one client slot; false if the trainer is full or inactive
+    public boolean reserveSlot() {
+        while (true) {
+            int claimed = currentClients;
+            if (claimed >= maxClients || !isActive()) {
+                return false;
+            }
+            if (CLIENT_SLOTS.compareAndSet(this, claimed, claimed + 1)) {
+                refreshAvailability();
+                return true;
             }
         }
     }
 
-    public void removeClient(String memberId) {
-        if (assignedMemberIds.remove(memberId)) {
-            currentClients--;
-            if (currentClients < maxClients) {
-                availability = "Available";
+    public void releaseSlot() {
+        while (true) {
+            int claimed = currentClients;
+            if (claimed <= 0 || CLIENT_SLOTS.compareAndSet(this, claimed, claimed - 1)) {
+                refreshAvailability();
+                return;
+            }
+        }
+    }
+
+    // Run after every slot change; the last run sees the last count, so racing updates
+    // still leave the right status
+    private synchronized void refreshAvailability() {
+        if (currentClients >= maxClients) {
+            availability = "Fully Booked";
+        } else if ("Fully Booked".equals(availability)) {
+            availability = "Available";
+        }
+    }
+
+    // Add a member whose slot was already claimed with reserveSlot(); a member already
+    // on the list gives the extra slot back
+    public void addReservedClient(String memberId) {
+        boolean added;
+        synchronized (this) {
+            added = !assignedMemberIds.contains(memberId) && assignedMemberIds.add(memberId);
+        }
+        if (added) {
+            stampWrite();
+        } else {
+            releaseSlot();
+        }
+    }
+
+    // Returns false if the trainer is full or inactive
+    public boolean addClient(String memberId) {
+        synchronized (this) {
+            if (assignedMemberIds.contains(memberId)) {
+                return true;
             }
         }
+        if (!reserveSlot()) {
+            return false;
+        }
+        addReservedClient(memberId);
+        return true;
+    }
+
+    // Replace the whole client list, as when assignments are restored on load
+    public synchronized void setClients(Collection<String> memberIds) {
+        assignedMemberIds.clear();
+        assignedMemberIds.addAll(memberIds);
+        currentClients = assignedMemberIds.size();
+        availability = currentClients >= maxClients ? "Fully Booked" : "Available";
+        stampWrite();
+    }
+
+    public void removeClient(String memberId) {
+        boolean removed;
+        synchronized (this) {
+            removed = assignedMemberIds.remove(memberId);
+        }
+        if (removed) {
+            releaseSlot();
+            stampWrite();
+        }
     }
 
     public void createWorkoutPlan(String memberId, String planDetails) {
@@ -156,6 +235,44 @@ public class Trainer extends User {
         return 4.5;
     }
 
+    @Override
+    protected synchronized void writeFields(UserCodec.Writer out) {
+        super.writeFields(out);
+        out.writeString(specialization);
+        out.writeString(experience);
+        out.writeString(availability);
+        out.writeDouble(hourlyRate);
+        out.writeVarInt(maxClients);
+        out.writeVarInt(currentClients);
+        out.writeStringList(certifications);
+        out.writeStringList(assignedMemberIds);
+        out.writeDouble(totalEarnings);
+        out.writeString(phoneNumber);
+        out.writeString(address);
+        out.writeStringList(workoutPlansCreated);
+        out.writeStringList(sessionsCompleted);
+        out.writeString(workingHours);
+    }
+
+    @Override
+    protected void readFields(UserCodec.Reader in) throws IOException {
+        super.readFields(in);
+        specialization = in.readString();
+        experience = in.readString();
+        availability = in.readString();
+        hourlyRate = in.readDouble();
+        maxClients = in.readVarInt();
+        currentClients = in.readVarInt();
+        certifications = in.readStringList();
+        assignedMemberIds = in.readStringList();
+        totalEarnings = in.readDouble();
+        phoneNumber = in.readString();
+        address = in.readString();
+        workoutPlansCreated = in.readStringList();
+        sessionsCompleted = in.readStringList();
+        workingHours = in.readString();
+    }
+
     // Getters and Setters
     public String getSpecialization() { return specialization; }
     public String getExperience() { return experience; }
@@ -163,7 +280,7 @@ public class Trainer extends User {
     public double getHourlyRate() { return hourlyRate; }
     public int getMaxClients() { return maxClients; }
     public int getCurrentClients() { return currentClients; }
-    public List<String> getAssignedMemberIds() { return assignedMemberIds; }
+    public synchronized List<String> getAssignedMemberIds() { return new ArrayList<>(assignedMemberIds); }
     public double getTotalEarnings() { return totalEarnings; }
     public List<String> getCertifications() { return certifications; }
     public String getPhoneNumber() { return phoneNumber; }
@@ -0,0 +1,184 @@
+// TrigramIndex.java - Inverted trigram index for case-insensitive substring search over user fields
+import java.util.*;
+
+public class TrigramIndex {
+    // Every indexed user gets a small int document id. Each trigram of each lowercased
+    // field maps to a sorted list of the documents containing it, so a substring search
+    // intersects the lists of the term's trigrams and only checks the few survivors.
+    // Terms shorter than a trigram fall back to scanning the stored field text.
+    private static final int GRAM = 3;
+    private static final char FIELD_SEPARATOR = '\n';
+
+    private static class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            int at = size == 0 || docs[size - 1] < doc ? size : Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0 && at < size) {
+                return; // already present
+            }
+            int insert = at < 0 ? -at - 1 : at;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, insert, docs, insert + 1, size - insert);
+            docs[insert] = doc;
+            size++;
+        }
+
+        void remove(int doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0) {
+                System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+                size--;
+            }
+        }
+
+        boolean contains(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+        }
+    }
+
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final List<String> userIds = new ArrayList<>(); // doc -> userId, null if free
+    private final List<String> texts = new ArrayList<>();   // doc -> lowercased fields
+    private final Deque<Integer> freeDocs = new ArrayDeque<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    // Index (or re-index) a user's searchable fields; only trigrams that changed are touched
+    public synchronized void put(String userId, Collection<String> fields) {
+        StringBuilder text = new StringBuilder();
+        for (String field : fields) {
+            if (field != null && !field.isEmpty()) {
+                text.append(field.toLowerCase(Locale.ROOT)).append(FIELD_SEPARATOR);
+            }
+        }
+        String newText = text.toString();
+
+        Integer doc = docIds.get(userId);
+        Set<String> oldGrams = Collections.emptySet();
+        if (doc == null) {
+            doc = freeDocs.isEmpty() ? userIds.size() : freeDocs.poll();
+            if (doc == userIds.size()) {
+                userIds.add(userId);
+                texts.add(newText);
+            } else {
+                userIds.set(doc, userId);
+                texts.set(doc, newText);
+            }
+            docIds.put(userId, doc);
+        } else {
+            String oldText = texts.get(doc);
+            if (oldText.equals(newText)) {
+                return;
+            }
+            oldGrams = grams(oldText);
+            texts.set(doc, newText);
+        }
+
+        Set<String> newGrams = grams(newText);
+        for (String gram : oldGrams) {
+            if (!newGrams.contains(gram)) {
+                removePosting(gram, doc);
+            }
+        }
+        for (String gram : newGrams) {
+            if (!oldGrams.contains(gram)) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+            }
+        }
+    }
+
+    public synchronized void remove(String userId) {
+        Integer doc = docIds.remove(userId);
+        if (doc == null) {
+            return;
+        }
+        for (String gram : grams(texts.get(doc))) {
+            removePosting(gram, doc);
+        }
+        userIds.set(doc, null);
+        texts.set(doc, null);
+        freeDocs.add(doc);
+    }
+
+    public synchronized void clear() {
+        docIds.clear();
+        userIds.clear();
+        texts.clear();
+        freeDocs.clear();
+        postings.clear();
+    }
+
+    public synchronized int size() {
+        return docIds.size();
+    }
+
+    // Ids of users with a field containing the term, ignoring case
+    public synchronized List<String> search(String term) {
+        List<String> matches = new ArrayList<>();
+        String lowerTerm = term.toLowerCase(Locale.ROOT);
+        if (lowerTerm.isEmpty()) {
+            return matches;
+        }
+
+        if (lowerTerm.length() < GRAM) {
+            for (int doc = 0; doc < texts.size(); doc++) {
+                String text = texts.get(doc);
+                if (text != null && text.contains(lowerTerm)) {
+                    matches.add(userIds.get(doc));
+                }
+            }
+            return matches;
+        }
+
+        // Walk the shortest list and probe the others, so the cost follows the rarest trigram
+        List<Postings> lists = new ArrayList<>();
+        for (String gram : grams(lowerTerm)) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return matches;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        Postings shortest = lists.get(0);
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int doc = shortest.docs[i];
+            for (int l = 1; l < lists.size(); l++) {
+                if (!lists.get(l).contains(doc)) {
+                    continue candidates;
+                }
+            }
+            // Trigrams can match out of order; confirm the whole term
+            if (texts.get(doc).contains(lowerTerm)) {
+                matches.add(userIds.get(doc));
+            }
+        }
+        return matches;
+    }
+
+    private void removePosting(String gram, int doc) {
+        Postings list = postings.get(gram);
+        if (list != null) {
+            list.remove(doc);
+            if (list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    // Trigrams within each field; none span the separator
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM);
+            if (gram.indexOf(FIELD_SEPARATOR) < 0) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+}
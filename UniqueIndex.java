@@ -0,0 +1,82 @@
+// UniqueIndex.java - Normalized value -> user id index for attributes that must be unique
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+public class UniqueIndex {
+    // Values are normalized before use, so "A@x.com " and "a@x.com" are the same key.
+    // Blank values are never indexed; several users may leave a field empty.
+    private final UnaryOperator<String> normalizer;
+    private final Map<String, String> owners = new HashMap<>(); // key -> userId
+    private final Map<String, String> keys = new HashMap<>();   // userId -> key
+
+    public UniqueIndex(UnaryOperator<String> normalizer) {
+        this.normalizer = normalizer;
+    }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Digits only, keeping a leading '+', so spacing and punctuation do not matter
+    public static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder(phone.length());
+        for (char c : phone.trim().toCharArray()) {
+            if (Character.isDigit(c) || (c == '+' && normalized.length() == 0)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private String key(String value) {
+        String key = normalizer.apply(value);
+        return key == null || key.isEmpty() ? null : key;
+    }
+
+    // Id of the user holding the value, or null
+    public synchronized String lookup(String value) {
+        String key = key(value);
+        return key == null ? null : owners.get(key);
+    }
+
+    // True if another user already holds the value
+    public synchronized boolean isTaken(String value, String exceptUserId) {
+        String owner = lookup(value);
+        return owner != null && !owner.equals(exceptUserId);
+    }
+
+    // Index the user's current value, replacing its previous one. Returns false, and
+    // leaves the value unindexed for this user, if another user already holds it.
+    public synchronized boolean put(String userId, String value) {
+        remove(userId);
+        String key = key(value);
+        if (key == null) {
+            return true;
+        }
+        String owner = owners.putIfAbsent(key, userId);
+        if (owner != null && !owner.equals(userId)) {
+            return false;
+        }
+        keys.put(userId, key);
+        return true;
+    }
+
+    public synchronized void remove(String userId) {
+        String key = keys.remove(userId);
+        if (key != null) {
+            owners.remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        owners.clear();
+        keys.clear();
+    }
+
+    public synchronized int size() {
+        return owners.size();
+    }
+}
@@ -1,10 +1,14 @@
 // User.java - Fixed Abstract Base Class
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class User implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Write stamps come from one counter, so a user deleted and registered again never
+    // repeats a stamp its predecessor had
+    private static final AtomicLong WRITE_STAMPS = new AtomicLong();
 
     protected String userId;
     protected String name;
@@ -12,9 +16,13 @@ public abstract class User implements Serializable {
     protected String password;
     protected String role;
     protected String phoneNumber;
-    protected String createdDate;
-    protected String lastLoginDate;
+    protected long createdAt;   // GymDates timestamp
+    protected long lastLoginAt; // GymDates timestamp, NEVER if the user has not logged in
     protected boolean isActive;
+    // Restamped on every persisted change, to tell which users changed since their shard
+    // was written. Memory only; 0 after loading. Edit versions for optimistic updates are
+    // kept by UserManager.
+    private transient volatile long writeStamp;
 
     public User(String userId, String name, String email, String password, String role) {
         this.userId = userId;
@@ -23,16 +31,21 @@ public abstract class User implements Serializable {
         this.password = password;
         this.role = role;
         this.phoneNumber = "";
-        this.createdDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        this.lastLoginDate = null;
+        this.createdAt = GymDates.now();
+        this.lastLoginAt = GymDates.NEVER;
         this.isActive = true;
     }
 
+    // Used by UserCodec when decoding; fields are filled in by readFields
+    protected User(String role) {
+        this.role = role;
+    }
+
     // Abstract method that must be implemented by subclasses
     public abstract void displayDashboard();
 
     public void updateLastLogin() {
-        this.lastLoginDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        this.lastLoginAt = GymDates.now();
     }
 
     // Getters and Setters
@@ -42,15 +55,74 @@ public abstract class User implements Serializable {
     public String getPassword() { return password; }
     public String getRole() { return role; }
     public String getPhoneNumber() { return phoneNumber; }
-    public String getCreatedDate() { return createdDate; }
-    public String getLastLoginDate() { return lastLoginDate; }
+    public String getCreatedDate() { return GymDates.formatDateTime(createdAt); }
+    public String getLastLoginDate() { return GymDates.formatDateTime(lastLoginAt); }
+    public long getCreatedAt() { return createdAt; }
+    public long getLastLoginAt() { return lastLoginAt; }
     public boolean isActive() { return isActive; }
+    public long getWriteStamp() { return writeStamp; }
+
+    long stampWrite() {
+        long stamp = WRITE_STAMPS.incrementAndGet();
+        writeStamp = stamp;
+        return stamp;
+    }
 
     public void setName(String name) { this.name = name; }
     public void setEmail(String email) { this.email = email; }
     public void setPassword(String password) { this.password = password; }
     public void setPhoneNumber(String phoneNumber) { this.phoneNumber = phoneNumber; }
     public void setActive(boolean active) { this.isActive = active; }
+    public void setLastLoginDate(String lastLoginDate) { this.lastLoginAt = GymDates.parseDateTime(lastLoginDate); }
+    public void setLastLoginAt(long lastLoginAt) { this.lastLoginAt = lastLoginAt; }
+
+    // Binary encoding - subclasses append their own fields after these
+    protected void writeFields(UserCodec.Writer out) {
+        out.writeString(userId);
+        out.writeString(name);
+        out.writeString(email);
+        out.writeString(password);
+        out.writeString(phoneNumber);
+        out.writeTimestamp(createdAt);
+        out.writeTimestamp(lastLoginAt);
+        out.writeBoolean(isActive);
+    }
+
+    protected void readFields(UserCodec.Reader in) throws IOException {
+        userId = in.readString();
+        name = in.readString();
+        email = in.readString();
+        password = in.readString();
+        phoneNumber = in.readString();
+        if (in.getVersion() < 2) {
+            createdAt = GymDates.parseDateTime(in.readString());
+            lastLoginAt = GymDates.parseDateTime(in.readString());
+        } else {
+            createdAt = in.readTimestamp();
+            lastLoginAt = in.readTimestamp();
+        }
+        isActive = in.readBoolean();
+    }
+
+    // Java serialization is only read back, from users.dat files and journal records
+    // older than UserCodec. Those carry createdDate and lastLoginDate as strings.
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        userId = (String) fields.get("userId", null);
+        name = (String) fields.get("name", null);
+        email = (String) fields.get("email", null);
+        password = (String) fields.get("password", null);
+        role = (String) fields.get("role", null);
+        phoneNumber = (String) fields.get("phoneNumber", null);
+        isActive = fields.get("isActive", false);
+        if (fields.defaulted("createdAt")) {
+            createdAt = GymDates.parseDateTime((String) fields.get("createdDate", null));
+            lastLoginAt = GymDates.parseDateTime((String) fields.get("lastLoginDate", null));
+        } else {
+            createdAt = fields.get("createdAt", GymDates.NEVER);
+            lastLoginAt = fields.get("lastLoginAt", GymDates.NEVER);
+        }
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,346 @@
+// UserCodec.java - Compact versioned binary format for users
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class UserCodec {
+    // Layout: [int magic][varint version][varint count]
+    //         count x ([varint length][byte type][fields...])
+    //         [varint dictSize] dictSize x ([varint length][utf-8 bytes])
+    //         [long dictionaryOffset][int magic]
+    // Every string is stored once in the trailing dictionary and referenced by
+    // index, so repeated values (membership types, roles) cost a byte or two.
+    // Version 2 stores dates as epoch values (see GymDates) instead of strings;
+    // version 1 files are still read.
+    public static final int MAGIC = 0x47594D55; // "GYMU"
+    public static final int VERSION = 2;
+
+    private static final byte TYPE_MEMBER = 1;
+    private static final byte TYPE_TRAINER = 2;
+    private static final byte TYPE_ADMIN = 3;
+
+    public static byte[] encode(Collection<? extends User> users) {
+        return encode(users, new int[users.size()]);
+    }
+
+    // Also reports where each record starts, so single users can be read back with readUserAt
+    public static byte[] encode(Collection<? extends User> users, int[] offsets) {
+        Writer writer = new Writer();
+        writer.writeHeader(users.size());
+        int i = 0;
+        for (User user : users) {
+            offsets[i++] = writer.position;
+            writer.writeUser(user);
+        }
+        return writer.finish();
+    }
+
+    public static byte[] encode(User user) {
+        return encode(Collections.singletonList(user));
+    }
+
+    public static List<User> decode(byte[] data) throws IOException {
+        Reader reader = new Reader(data);
+        List<User> users = new ArrayList<>(reader.getRecordCount());
+        for (int i = 0; i < reader.getRecordCount(); i++) {
+            users.add(reader.readUser());
+        }
+        return users;
+    }
+
+    public static User decodeOne(byte[] data) throws IOException {
+        List<User> users = decode(data);
+        if (users.size() != 1) {
+            throw new IOException("Expected a single user record, found " + users.size());
+        }
+        return users.get(0);
+    }
+
+    // Format version of a user data file, read from its header only
+    public static int readVersion(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a user data file: " + file);
+            }
+            int version = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                version |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return version;
+                }
+            }
+            throw new IOException("Malformed version in " + file);
+        }
+    }
+
+    // Small negative values (days before 1970) stay short as varints
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static class Writer {
+        private byte[] buffer = new byte[4096];
+        private int position;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> dictionaryOrder = new ArrayList<>();
+
+        void writeHeader(int recordCount) {
+            writeFixedInt(MAGIC);
+            writeVarInt(VERSION);
+            writeVarInt(recordCount);
+        }
+
+        void writeUser(User user) {
+            // Encode the body first so it can be length-prefixed for skipping
+            int bodyStart = position;
+            writeByte(typeOf(user));
+            user.writeFields(this);
+            int bodyLength = position - bodyStart;
+
+            byte[] body = Arrays.copyOfRange(buffer, bodyStart, position);
+            position = bodyStart;
+            writeVarInt(bodyLength);
+            writeBytes(body, 0, body.length);
+        }
+
+        byte[] finish() {
+            long dictionaryOffset = position;
+            writeVarInt(dictionaryOrder.size());
+            for (String value : dictionaryOrder) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                writeBytes(bytes, 0, bytes.length);
+            }
+            writeFixedLong(dictionaryOffset);
+            writeFixedInt(MAGIC);
+            return Arrays.copyOf(buffer, position);
+        }
+
+        public void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (index == null) {
+                index = dictionaryOrder.size();
+                dictionary.put(value, index);
+                dictionaryOrder.add(value);
+            }
+            writeVarInt(index + 1);
+        }
+
+        public void writeStringList(List<String> values) {
+            writeVarInt(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        public void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        // Bit-reversed so round amounts (50.0, 80.0, 0.0) become short varints
+        public void writeDouble(double value) {
+            writeVarLong(Long.reverse(Double.doubleToRawLongBits(value)));
+        }
+
+        public void writeDate(int day) {
+            writeVarLong(day == GymDates.NO_DATE ? 0 : zigZag(day) + 1);
+        }
+
+        public void writeTimestamp(long timestamp) {
+            writeVarLong(timestamp == GymDates.NEVER ? 0 : zigZag(timestamp) + 1);
+        }
+
+        public void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        public void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeFixedInt(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte(value >>> shift);
+            }
+        }
+
+        private void writeFixedLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    public static class Reader {
+        private final byte[] data;
+        private int position;
+        private final int version;
+        private final int recordCount;
+        private final String[] dictionary;
+
+        public Reader(byte[] data) throws IOException {
+            this.data = data;
+            if (data.length < 16 || readFixedIntAt(0) != MAGIC || readFixedIntAt(data.length - 4) != MAGIC) {
+                throw new IOException("Not a user data file");
+            }
+
+            // Load the dictionary from the trailer, then rewind to the records
+            position = (int) readFixedLongAt(data.length - 12);
+            this.dictionary = new String[readVarInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                int length = readVarInt();
+                require(length);
+                dictionary[i] = new String(data, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+
+            position = 4;
+            this.version = readVarInt();
+            if (version > VERSION) {
+                throw new IOException("Unsupported user data version " + version);
+            }
+            this.recordCount = readVarInt();
+        }
+
+        public int getVersion() { return version; }
+        public int getRecordCount() { return recordCount; }
+        public int getPosition() { return position; }
+
+        public User readUserAt(int offset) throws IOException {
+            if (offset < 4 || offset >= data.length) {
+                throw new IOException("Bad user record offset " + offset);
+            }
+            position = offset;
+            return readUser();
+        }
+
+        public User readUser() throws IOException {
+            int length = readVarInt();
+            require(length);
+            int end = position + length;
+            User user = newUser(data[position++]);
+            user.readFields(this);
+            if (position != end) {
+                throw new IOException("Corrupt user record for " + user.getUserId());
+            }
+            return user;
+        }
+
+        public String readString() throws IOException {
+            int index = readVarInt();
+            if (index == 0) {
+                return null;
+            }
+            if (index > dictionary.length) {
+                throw new IOException("Bad string reference " + index);
+            }
+            return dictionary[index - 1];
+        }
+
+        public List<String> readStringList() throws IOException {
+            int size = readVarInt();
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        public boolean readBoolean() throws IOException {
+            require(1);
+            return data[position++] != 0;
+        }
+
+        public double readDouble() throws IOException {
+            return Double.longBitsToDouble(Long.reverse(readVarLong()));
+        }
+
+        public int readDate() throws IOException {
+            long value = readVarLong();
+            return value == 0 ? GymDates.NO_DATE : (int) unZigZag(value - 1);
+        }
+
+        public long readTimestamp() throws IOException {
+            long value = readVarLong();
+            return value == 0 ? GymDates.NEVER : unZigZag(value - 1);
+        }
+
+        public int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        public long readVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = data[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private void require(int bytes) throws EOFException {
+            if (position + bytes > data.length) {
+                throw new EOFException("Unexpected end of user data");
+            }
+        }
+
+        private int readFixedIntAt(int offset) {
+            return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                    | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+        }
+
+        private long readFixedLongAt(int offset) {
+            return ((long) readFixedIntAt(offset) << 32) | (readFixedIntAt(offset + 4) & 0xFFFFFFFFL);
+        }
+    }
+
+    private static byte typeOf(User user) {
+        if (user instanceof Member) return TYPE_MEMBER;
+        if (user instanceof Trainer) return TYPE_TRAINER;
+        if (user instanceof Admin) return TYPE_ADMIN;
+        throw new IllegalArgumentException("Unknown user type: " + user.getClass().getName());
+    }
+
+    private static User newUser(byte type) throws IOException {
+        switch (type) {
+            case TYPE_MEMBER: return new Member();
+            case TYPE_TRAINER: return new Trainer();
+            case TYPE_ADMIN: return new Admin();
+            default: throw new IOException("Unknown user record type " + type);
+        }
+    }
+}
@@ -1,76 +1,359 @@
 // UserManager.java - Clean version without debug output
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 
 public class UserManager {
     private Map<String, User> users;
-    private User currentUser;
+    // Everyone logged in, by token; closed together when the data is cleared or restored
+    private final SessionManager sessions = new SessionManager(this::endSession);
+    // Last-login times not yet journaled; the save scheduler writes them in its next flush,
+    // so a burst of logins costs one record per user rather than one per login
+    private final Map<String, Long> pendingLogins = new ConcurrentHashMap<>();
     private DataManager dataManager;
     private Map<String, String> trainerMemberAssignments; // memberId -> trainerId
+    // Reverse of trainerMemberAssignments; also read by lazy loads outside this object's lock
+    private final Map<String, Set<String>> membersByTrainer = new ConcurrentHashMap<>();
+    private Map<String, String> orphanedAssignments = Collections.emptyMap();
+    private SnapshotCompactor compactor;
+    private SaveScheduler saveScheduler;
+    private Map<String, List<String>> workouts;
+    // Unique contact details, kept in step with users under this object's lock
+    private final UniqueIndex emailIndex = new UniqueIndex(UniqueIndex::normalizeEmail);
+    private final UniqueIndex phoneIndex = new UniqueIndex(UniqueIndex::normalizePhone);
+    private final RoleIndex roleIndex = new RoleIndex();
+    private final TrigramIndex searchIndex = new TrigramIndex();
+    private final PrefixIndex prefixIndex = new PrefixIndex();
+    private final FuzzyNameIndex fuzzyIndex = new FuzzyNameIndex();
+    private final TemporalIndex expiryIndex = new TemporalIndex();
+    private final TemporalIndex joinIndex = new TemporalIndex();
+    private final TemporalIndex lastLoginIndex = new TemporalIndex();
+    // Report totals, recounted per user whenever a user is indexed or changes
+    private final GymStatistics statistics = new GymStatistics();
+    // A change to users takes the shared side of storeLock and the stripes of every user
+    // (and email or phone number) it touches, so sessions working on different users run
+    // in parallel. Whole-store operations - snapshot capture, clearing, restoring,
+    // deleting - take the exclusive side. Trainer client slots are the one exception:
+    // they are claimed without the trainer's stripe (see assignTrainerToMember).
+    private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+    private final LockStripes userLocks = new LockStripes(64);
+    // Lazy mode builds the indexes that need whole users on first use, not at startup
+    private volatile boolean deferredIndexesReady;
+    // Startup phase -> milliseconds, in the order the phases finished
+    private final Map<String, Long> startupTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+    // Optimistic updates take the version the caller read and apply the change only if
+    // nobody has changed the user since, so nothing is held while an admin decides.
+    // Callers without a version pass ANY_VERSION.
+    static final long ANY_VERSION = -1;
+    // A user's version changes with each persisted profile change - registration, contact
+    // details, password, status, profile edits - and nothing else, so logins, payments and
+    // trainer assignments never make an edit look stale. Versions are kept by id rather
+    // than on the user objects, which lazy mode may drop and load again. Users not changed
+    // since the data was loaded have baseVersion, which is new after every load and clear.
+    private final AtomicLong versionStamps = new AtomicLong();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private volatile long baseVersion;
 
     public UserManager() {
+        open();
+    }
+
+    // Load the data directory and start the background writers
+    @SuppressWarnings("try")
+    private void open() {
+        resetVersions();
+        startupTimings.clear();
+        orphanedAssignments = Collections.emptyMap();
+        long startupStart = System.nanoTime();
         this.dataManager = new DataManager();
+        startupTimings.put("Open data files", elapsedMillis(startupStart));
+
+        // The three files are independent, so they are read and decoded concurrently
+        long loadStart = System.nanoTime();
+        CompletableFuture<Map<String, User>> usersLoad = timedLoad("Load users", dataManager::loadUsers);
+        CompletableFuture<Map<String, String>> assignmentsLoad = timedLoad("Load assignments", dataManager::loadAssignments);
+        CompletableFuture<Map<String, List<String>>> workoutsLoad = timedLoad("Load workouts", dataManager::loadWorkouts);
 
         // Initialize with empty map if loading fails
-        Map<String, User> loadedUsers = dataManager.loadUsers();
-        this.users = (loadedUsers != null) ? loadedUsers : new HashMap<>();
+        Map<String, User> loadedUsers = usersLoad.join();
+        if (loadedUsers instanceof LazyUserMap) {
+            this.users = loadedUsers;
+        } else {
+            this.users = (loadedUsers != null) ? new ConcurrentHashMap<>(loadedUsers) : new ConcurrentHashMap<>();
+        }
+
+        Map<String, String> loadedAssignments = assignmentsLoad.join();
+        this.trainerMemberAssignments = (loadedAssignments != null) ? new ConcurrentHashMap<>(loadedAssignments) : new ConcurrentHashMap<>();
+
+        Map<String, List<String>> loadedWorkouts = workoutsLoad.join();
+        this.workouts = (loadedWorkouts != null) ? loadedWorkouts : new HashMap<>();
+        startupTimings.put("Load (wall clock)", elapsedMillis(loadStart));
+
+        // In lazy mode relationships are restored per user as it is loaded
+        LazyUserMap lazyUsers = users instanceof LazyUserMap ? (LazyUserMap) users : null;
+        if (lazyUsers != null) {
+            lazyUsers.addLoadListener(this::restoreRelationships);
+        }
+
+        // Bring the snapshot up to date with changes journaled since it was written
+        long phaseStart = System.nanoTime();
+        dataManager.replayJournal(users, trainerMemberAssignments);
+        rebuildAssignmentIndex();
+        startupTimings.put("Replay journal", elapsedMillis(phaseStart));
+
+        HotFieldStore hotFields = dataManager.getHotFields();
+        phaseStart = System.nanoTime();
+        if (lazyUsers != null) {
+            // Users touched by the replay were loaded before it finished
+            lazyUsers.forEachLoaded(this::restoreRelationships);
+        } else {
+            // Only restore relationships if we have users
+            if (!users.isEmpty()) {
+                restoreTrainerMemberRelationships();
+            }
+        }
+        startupTimings.put("Restore relationships", elapsedMillis(phaseStart));
+        phaseStart = System.nanoTime();
+        rebuildIndexes();
+        startupTimings.put("Build indexes", elapsedMillis(phaseStart));
+        if (lazyUsers == null && hotFields != null) {
+            phaseStart = System.nanoTime();
+            hotFields.sync(users);
+            startupTimings.put("Sync hot fields", elapsedMillis(phaseStart));
+        }
+
+        if (dataManager.isJournalingEnabled()) {
+            this.compactor = new SnapshotCompactor(this, dataManager);
+            compactor.start();
+            this.saveScheduler = new SaveScheduler(() -> {
+                journalPendingLogins();
+                dataManager.getJournal().sync();
+                if (hotFields != null) {
+                    hotFields.force();
+                }
+            });
+        } else {
+            this.saveScheduler = new SaveScheduler(() -> {
+                try (LockStripes.Held held = lockStore()) {
+                    saveData();
+                }
+                if (hotFields != null) {
+                    hotFields.force();
+                }
+            });
+        }
+        startupTimings.put("Total startup", elapsedMillis(startupStart));
+    }
+
+    private <T> CompletableFuture<T> timedLoad(String phase, Supplier<T> loader) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            T result = loader.get();
+            startupTimings.put(phase, elapsedMillis(start));
+            return result;
+        });
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public Map<String, Long> getStartupTimings() {
+        synchronized (startupTimings) {
+            return new LinkedHashMap<>(startupTimings);
+        }
+    }
+
+    public Map<String, List<String>> getWorkouts() { return workouts; }
+
+    private void rebuildAssignmentIndex() {
+        membersByTrainer.clear();
+        for (Map.Entry<String, String> entry : trainerMemberAssignments.entrySet()) {
+            indexAssignment(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // Atomic per trainer, since assignments to one trainer run in parallel
+    private void indexAssignment(String memberId, String trainerId) {
+        membersByTrainer.compute(trainerId, (id, memberIds) -> {
+            Set<String> ids = memberIds != null ? memberIds : ConcurrentHashMap.<String>newKeySet();
+            ids.add(memberId);
+            return ids;
+        });
+    }
+
+    private void unindexAssignment(String memberId, String trainerId) {
+        membersByTrainer.computeIfPresent(trainerId, (id, memberIds) -> {
+            memberIds.remove(memberId);
+            return memberIds.isEmpty() ? null : memberIds;
+        });
+    }
+
+    // Lazy mode builds the indexes from the shard summaries, without loading users
+    private void rebuildIndexes() {
+        emailIndex.clear();
+        phoneIndex.clear();
+        roleIndex.clear();
+        searchIndex.clear();
+        prefixIndex.clear();
+        fuzzyIndex.clear();
+        clearTemporalIndexes();
+        statistics.clear();
+        deferredIndexesReady = !(users instanceof LazyUserMap);
+        int[] conflicts = new int[1];
+        if (users instanceof LazyUserMap) {
+            ((LazyUserMap) users).forEachSummary(summary -> {
+                roleIndex.put(summary.getUserId(), summary.getRole(), summary.getName());
+                if (!emailIndex.put(summary.getUserId(), summary.getEmail())
+                        | !phoneIndex.put(summary.getUserId(), summary.getPhone())) {
+                    conflicts[0]++;
+                }
+            });
+        } else {
+            for (User user : users.values()) {
+                if (!indexUser(user)) {
+                    conflicts[0]++;
+                }
+            }
+        }
+        if (conflicts[0] > 0) {
+            System.out.println(GymUI.YELLOW + "⚠️ " + conflicts[0] + " users share an email or phone number with another user" + GymUI.RESET);
+        }
+    }
+
+    // Returns false if another user already holds the email or phone number
+    private boolean indexUser(User user) {
+        roleIndex.put(user.getUserId(), user.getRole(), user.getName());
+        searchIndex.put(user.getUserId(), searchableFields(user));
+        prefixIndex.put(user.getUserId(), user.getRole(), user.getName(), user.getLastLoginAt());
+        fuzzyIndex.put(user.getUserId(), user.getName());
+        indexDates(user);
+        statistics.put(user);
+        boolean emailIndexed = emailIndex.put(user.getUserId(), user.getEmail());
+        boolean phoneIndexed = phoneIndex.put(user.getUserId(), user.getPhoneNumber());
+        return emailIndexed && phoneIndexed;
+    }
 
-        Map<String, String> loadedAssignments = dataManager.loadAssignments();
-        this.trainerMemberAssignments = (loadedAssignments != null) ? loadedAssignments : new HashMap<>();
+    private void indexDates(User user) {
+        lastLoginIndex.put(user.getUserId(), GymDates.dayOf(user.getLastLoginAt()));
+        if (user instanceof Member) {
+            Member member = (Member) user;
+            expiryIndex.put(member.getUserId(), member.getExpiryDay());
+            joinIndex.put(member.getUserId(), member.getJoinDay());
+        }
+    }
 
-        this.currentUser = null;
+    private void clearTemporalIndexes() {
+        expiryIndex.clear();
+        joinIndex.clear();
+        lastLoginIndex.clear();
+    }
 
-        // Only restore relationships if we have users
-        if (!users.isEmpty()) {
-            restoreTrainerMemberRelationships();
+    private void unindexUser(String userId) {
+        roleIndex.remove(userId);
+        searchIndex.remove(userId);
+        prefixIndex.remove(userId);
+        fuzzyIndex.remove(userId);
+        expiryIndex.remove(userId);
+        joinIndex.remove(userId);
+        lastLoginIndex.remove(userId);
+        statistics.remove(userId);
+        emailIndex.remove(userId);
+        phoneIndex.remove(userId);
+    }
+
+    // Lazy mode counterpart of restoreTrainerMemberRelationships for a single user.
+    // Assignments are taken as stored; the other side is not loaded to validate them.
+    private void restoreRelationships(User user) {
+        if (user instanceof Member) {
+            String trainerId = trainerMemberAssignments.get(user.getUserId());
+            if (trainerId != null) {
+                ((Member) user).setAssignedTrainerId(trainerId);
+            }
+        } else if (user instanceof Trainer) {
+            Trainer trainer = (Trainer) user;
+            trainer.setClients(membersByTrainer.getOrDefault(trainer.getUserId(), Collections.emptySet()));
         }
     }
 
+    // Rebuild both sides of every assignment in one pass over the assignment index. Each
+    // member has one trainer, so each trainer's group is resolved on its own thread and
+    // written to the trainer once; nothing is searched per client. Assignments whose
+    // member or trainer is missing or inactive are dropped and reported.
     private void restoreTrainerMemberRelationships() {
         try {
-            // Clear existing assignments to avoid duplicates
+            // Trainers without any valid client end up empty
             for (User user : users.values()) {
                 if (user instanceof Trainer) {
-                    ((Trainer) user).getAssignedMemberIds().clear();
-                    ((Trainer) user).setCurrentClients(0);
+                    ((Trainer) user).setClients(Collections.emptyList());
                 }
             }
 
-            // Rebuild relationships from assignments map
-            for (Map.Entry<String, String> entry : trainerMemberAssignments.entrySet()) {
-                String memberId = entry.getKey();
-                String trainerId = entry.getValue();
-
-                Member member = getMemberById(memberId);
+            Map<String, String> orphans = new ConcurrentHashMap<>();
+            membersByTrainer.entrySet().parallelStream().forEach(group -> {
+                String trainerId = group.getKey();
                 Trainer trainer = getTrainerById(trainerId);
-
-                if (member != null && trainer != null && member.isActive() && trainer.isActive()) {
-                    member.setAssignedTrainerId(trainerId);
-                    if (!trainer.getAssignedMemberIds().contains(memberId)) {
-                        trainer.getAssignedMemberIds().add(memberId);
-                        trainer.setCurrentClients(trainer.getCurrentClients() + 1);
-                    }
-                    // Update trainer availability based on client count
-                    if (trainer.getCurrentClients() >= trainer.getMaxClients()) {
-                        trainer.setAvailability("Fully Booked");
+                String trainerProblem = trainer == null ? "trainer missing"
+                        : !trainer.isActive() ? "trainer inactive" : null;
+                List<String> clients = new ArrayList<>(group.getValue().size());
+                for (String memberId : group.getValue()) {
+                    Member member = getMemberById(memberId);
+                    String problem = member == null ? "member missing"
+                            : !member.isActive() ? "member inactive" : trainerProblem;
+                    if (problem == null) {
+                        member.setAssignedTrainerId(trainerId);
+                        clients.add(memberId);
                     } else {
-                        trainer.setAvailability("Available");
-                    }
-                } else {
-                    // Remove invalid assignments
-                    trainerMemberAssignments.remove(memberId);
-                    if (member != null) {
-                        member.setAssignedTrainerId(null);
+                        orphans.put(memberId, problem);
+                        if (member != null) {
+                            member.setAssignedTrainerId(null);
+                        }
                     }
                 }
+                if (trainer != null) {
+                    trainer.setClients(clients);
+                }
+            });
+
+            orphanedAssignments = new TreeMap<>(orphans);
+            if (!orphans.isEmpty()) {
+                trainerMemberAssignments.keySet().removeAll(orphans.keySet());
+                rebuildAssignmentIndex();
+                reportOrphanedAssignments();
             }
         } catch (Exception e) {
             System.err.println("Error restoring relationships: " + e.getMessage());
         }
     }
 
+    private void reportOrphanedAssignments() {
+        Map<String, Integer> byReason = new TreeMap<>();
+        for (String reason : orphanedAssignments.values()) {
+            byReason.merge(reason, 1, Integer::sum);
+        }
+        System.out.println(GymUI.YELLOW + "⚠️ Dropped " + orphanedAssignments.size() + " orphaned trainer assignments "
+                + byReason + GymUI.RESET);
+    }
+
+    // Assignments dropped by the last startup (memberId -> reason)
+    public Map<String, String> getOrphanedAssignments() {
+        return Collections.unmodifiableMap(orphanedAssignments);
+    }
+
     private void saveData() {
         try {
             boolean saved = dataManager.saveUsers(users) && dataManager.saveAssignments(trainerMemberAssignments);
+            dataManager.releaseCleanUsers();
             if (!saved) {
                 System.out.println(GymUI.RED + "⚠️ Data save failed!" + GymUI.RESET);
             }
@@ -79,39 +362,227 @@ public class UserManager {
         }
     }
 
-    // Clean Authentication without debug output
-    public boolean login(String userId, String password) {
+    // Record a single change to one user: one buffered journal record in journaled mode,
+    // and the user's shard is marked for the next save. The save scheduler then makes it
+    // durable together with any other changes in the same window.
+    private void logChange(String userId, Predicate<DataJournal> change) {
+        dataManager.markDirty(userId);
+        logHotChange(userId, change);
+    }
+
+    // Record a change that only touches hot fields (status, payments, expiry, trainer).
+    // Those are written in place to the mapped hot field store, so the user's shard stays
+    // clean unless the store cannot hold the user.
+    private void logHotChange(String userId, Predicate<DataJournal> change) {
+        try {
+            HotFieldStore hotFields = dataManager.getHotFields();
+            User user = users.get(userId);
+            if (user != null) {
+                user.stampWrite();
+                statistics.put(user);
+            } else {
+                statistics.remove(userId);
+            }
+            if (hotFields == null) {
+                dataManager.markDirty(userId);
+            } else if (user == null) {
+                hotFields.remove(userId);
+            } else if (!hotFields.write(user)) {
+                dataManager.markDirty(userId);
+            }
+            DataJournal journal = dataManager.getJournal();
+            if (journal != null && !change.test(journal)) {
+                System.out.println(GymUI.RED + "⚠️ Data save failed!" + GymUI.RESET);
+            }
+            saveScheduler.markDirty();
+        } catch (Exception e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    // Make every change so far durable, for callers that cannot wait for the scheduler
+    public void flush() {
+        saveScheduler.flush();
+    }
+
+    public SaveScheduler getSaveScheduler() { return saveScheduler; }
+
+    // Seal the active journal segment and copy the maps in one step, so every change is
+    // either in the copy or in a later segment. Users are serialized afterwards without
+    // the lock; journal records are idempotent, so replay converges either way.
+    @SuppressWarnings("try")
+    SnapshotCompactor.Capture captureSnapshot() {
+        try (LockStripes.Held held = lockStore()) {
+            DataJournal journal = dataManager.getJournal();
+            if (journal == null) {
+                return null;
+            }
+            long sealed = dataManager.sealForSnapshot();
+            Map<String, User> usersCopy = users instanceof LazyUserMap ? ((LazyUserMap) users).copy() : new HashMap<>(users);
+            return new SnapshotCompactor.Capture(usersCopy, new HashMap<>(trainerMemberAssignments), sealed);
+        }
+    }
+
+    // Called after a snapshot is written, under the same lock as changes so a user
+    // changed meanwhile keeps its pin
+    @SuppressWarnings("try")
+    void releaseCleanUsers() {
+        try (LockStripes.Held held = lockStore()) {
+            dataManager.releaseCleanUsers();
+        }
+    }
+
+    // The shared store lock plus the stripes of the given users or contact keys; ids are
+    // trimmed the same way the methods taking them do. Callers hold it in a
+    // try-with-resources block that never refers to it, so they suppress the "try" lint.
+    private LockStripes.Held lockUsers(String... keys) {
+        String[] trimmed = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            trimmed[i] = keys[i] != null ? keys[i].trim() : null;
+        }
+        Lock shared = storeLock.readLock();
+        shared.lock();
+        try {
+            LockStripes.Held stripes = userLocks.lock(trimmed);
+            return () -> {
+                stripes.close();
+                shared.unlock();
+            };
+        } catch (RuntimeException e) {
+            shared.unlock();
+            throw e;
+        }
+    }
+
+    private LockStripes.Held lockStore() {
+        Lock exclusive = storeLock.writeLock();
+        exclusive.lock();
+        return exclusive::unlock;
+    }
+
+    // Stripe keys for contact details, so two registrations cannot claim the same one
+    private static String emailKey(String email) {
+        return email != null ? "email:" + UniqueIndex.normalizeEmail(email) : null;
+    }
+
+    private static String phoneKey(String phone) {
+        return phone != null ? "phone:" + UniqueIndex.normalizePhone(phone) : null;
+    }
+
+    private void closeAllSessions() {
+        sessions.closeAll();
+        pendingLogins.clear();
+    }
+
+    // Write the batched last-login times; an entry updated meanwhile stays for the next flush
+    private void journalPendingLogins() {
+        DataJournal journal = dataManager.getJournal();
+        for (Map.Entry<String, Long> login : pendingLogins.entrySet()) {
+            if (pendingLogins.remove(login.getKey(), login.getValue())
+                    && !journal.logLogin(login.getKey(), login.getValue())) {
+                System.out.println(GymUI.RED + "⚠️ Data save failed!" + GymUI.RESET);
+            }
+        }
+    }
+
+    public SnapshotCompactor getCompactor() { return compactor; }
+
+    // Replace all data with a backup, optionally rolled forward to a point in time, then
+    // reload. Everyone is logged out, as after clearAllUsers.
+    @SuppressWarnings("try")
+    public boolean restoreBackup(String backupName, Long pointInTime) {
+        // Stop the background writers first; both may need this object's lock to finish
+        saveScheduler.close();
+        if (compactor != null) {
+            compactor.stop();
+        }
+        try (LockStripes.Held held = lockStore()) {
+            dataManager.close();
+            boolean restored = dataManager.restoreBackup(backupName, pointInTime);
+            closeAllSessions();
+            open();
+            if (restored) {
+                System.out.println(GymUI.GRAY + "   Data reloaded in " + startupTimings.get("Total startup") + " ms" + GymUI.RESET);
+            }
+            return restored;
+        }
+    }
+
+    public List<String> listBackups() {
+        return dataManager.getBackupManager().listBackups();
+    }
+
+    public void shutdown() {
+        sessions.shutdown();
+        saveScheduler.close();
+        if (compactor != null) {
+            compactor.stop();
+            compactor.compactNow();
+        }
+        dataManager.close();
+    }
+
+    // Clean Authentication without debug output. Returns the caller's session, or null
+    // if the credentials are wrong or the account is inactive.
+    @SuppressWarnings("try")
+    public UserSession login(String userId, String password) {
         if (userId == null || password == null || userId.trim().isEmpty()) {
-            return false;
+            return null;
         }
 
         String trimmedUserId = userId.trim();
-        User user = users.get(trimmedUserId);
+        try (LockStripes.Held held = lockUsers(trimmedUserId)) {
+            User user = users.get(trimmedUserId);
 
-        if (user == null) {
-            return false;
+            if (user == null) {
+                return null;
+            }
+
+            if (user.getPassword().equals(password) && user.isActive()) {
+                user.updateLastLogin();
+                user.stampWrite();
+                prefixIndex.touch(user.getUserId(), user.getLastLoginAt());
+                lastLoginIndex.put(user.getUserId(), GymDates.dayOf(user.getLastLoginAt()));
+                dataManager.markDirty(user.getUserId());
+                if (dataManager.getJournal() != null) {
+                    pendingLogins.put(user.getUserId(), user.getLastLoginAt());
+                }
+                saveScheduler.markDirty();
+                return sessions.open(user);
+            } else {
+                return null;
+            }
         }
+    }
 
-        if (user.getPassword().equals(password) && user.isActive()) {
-            currentUser = user;
-            user.updateLastLogin();
-            saveData();
-            return true;
-        } else {
-            return false;
+    // The save scheduler persists the session's changes with the next batch; callers
+    // that need them on disk now call flush()
+    public void logout(UserSession session) {
+        if (sessions.end(session)) {
+            endSession(session);
         }
     }
 
-    public void logout() {
-        if (currentUser != null) {
-            saveData();
-            currentUser = null;
+    // The open session for a token, or null if it ended or sat idle too long
+    public UserSession getSession(String token) {
+        return sessions.get(token);
+    }
+
+    // Session activity (action history, sessions, plans) is kept on the user object
+    @SuppressWarnings("try")
+    private void endSession(UserSession session) {
+        User user = session.getUser();
+        try (LockStripes.Held held = lockUsers(user.getUserId())) {
+            if (users.get(user.getUserId()) == user) {
+                logChange(user.getUserId(), journal -> journal.logUserUpdate(user));
+            }
         }
     }
 
-    public User getCurrentUser() { return currentUser; }
+    public int getSessionCount() { return sessions.size(); }
 
     // Clean Registration without debug output
+    @SuppressWarnings("try")
     public boolean registerAdmin(String userId, String name, String email, String password, String adminLevel) {
         try {
             if (userId == null || userId.trim().isEmpty()) {
@@ -120,28 +591,32 @@ public class UserManager {
 
             userId = userId.trim();
 
-            if (users.containsKey(userId)) {
-                return false;
-            }
+            try (LockStripes.Held held = lockUsers(userId, emailKey(email))) {
+                if (users.containsKey(userId)) {
+                    return false;
+                }
 
-            if (!isValidUserData(userId, name, email, password)) {
-                return false;
-            }
+                if (!isValidUserData(userId, name, email, password)) {
+                    return false;
+                }
 
-            if (isEmailTaken(email)) {
-                return false;
-            }
+                if (isEmailTaken(email)) {
+                    return false;
+                }
 
-            // Validate admin level
-            if (!isValidAdminLevel(adminLevel)) {
-                return false;
-            }
+                // Validate admin level
+                if (!isValidAdminLevel(adminLevel)) {
+                    return false;
+                }
 
-            Admin newAdmin = new Admin(userId, name.trim(), email.trim(), password, adminLevel);
-            users.put(userId, newAdmin);
+                Admin newAdmin = new Admin(userId, name.trim(), email.trim(), password, adminLevel);
+                users.put(userId, newAdmin);
+                indexUser(newAdmin);
 
-            saveData();
-            return true;
+                logChange(newAdmin.getUserId(), journal -> journal.logRegister(newAdmin));
+                profileChanged(userId);
+                return true;
+            }
         } catch (Exception e) {
             System.err.println("Error registering admin: " + e.getMessage());
             return false;
@@ -149,6 +624,7 @@ public class UserManager {
     }
 
     // Registration methods for Member and Trainer
+    @SuppressWarnings("try")
     public boolean registerMember(String userId, String name, String email, String password,
                                   String membershipType, String joinDate, String membershipExpiry, String fitnessGoal) {
         try {
@@ -158,29 +634,34 @@ public class UserManager {
 
             userId = userId.trim();
 
-            if (users.containsKey(userId)) {
-                return false;
-            }
+            try (LockStripes.Held held = lockUsers(userId, emailKey(email))) {
+                if (users.containsKey(userId)) {
+                    return false;
+                }
 
-            if (!isValidUserData(userId, name, email, password)) {
-                return false;
-            }
+                if (!isValidUserData(userId, name, email, password)) {
+                    return false;
+                }
 
-            if (isEmailTaken(email)) {
-                return false;
-            }
+                if (isEmailTaken(email)) {
+                    return false;
+                }
 
-            Member newMember = new Member(userId, name.trim(), email.trim(), password,
-                    membershipType, joinDate, membershipExpiry, fitnessGoal);
-            users.put(userId, newMember);
-            saveData();
-            return true;
+                Member newMember = new Member(userId, name.trim(), email.trim(), password,
+                        membershipType, joinDate, membershipExpiry, fitnessGoal);
+                users.put(userId, newMember);
+                indexUser(newMember);
+                logChange(newMember.getUserId(), journal -> journal.logRegister(newMember));
+                profileChanged(userId);
+                return true;
+            }
         } catch (Exception e) {
             System.err.println("Error registering member: " + e.getMessage());
             return false;
         }
     }
 
+    @SuppressWarnings("try")
     public boolean registerTrainer(String userId, String name, String email, String password,
                                    String specialization, String experience, double hourlyRate, int maxClients) {
         try {
@@ -190,27 +671,31 @@ public class UserManager {
 
             userId = userId.trim();
 
-            if (users.containsKey(userId)) {
-                return false;
-            }
+            try (LockStripes.Held held = lockUsers(userId, emailKey(email))) {
+                if (users.containsKey(userId)) {
+                    return false;
+                }
 
-            if (!isValidUserData(userId, name, email, password)) {
-                return false;
-            }
+                if (!isValidUserData(userId, name, email, password)) {
+                    return false;
+                }
 
-            if (isEmailTaken(email)) {
-                return false;
-            }
+                if (isEmailTaken(email)) {
+                    return false;
+                }
 
-            if (hourlyRate < 0 || maxClients < 1 || maxClients > 50) {
-                return false;
-            }
+                if (hourlyRate < 0 || maxClients < 1 || maxClients > 50) {
+                    return false;
+                }
 
-            Trainer newTrainer = new Trainer(userId, name.trim(), email.trim(), password,
-                    specialization, experience, hourlyRate, maxClients);
-            users.put(userId, newTrainer);
-            saveData();
-            return true;
+                Trainer newTrainer = new Trainer(userId, name.trim(), email.trim(), password,
+                        specialization, experience, hourlyRate, maxClients);
+                users.put(userId, newTrainer);
+                indexUser(newTrainer);
+                logChange(newTrainer.getUserId(), journal -> journal.logRegister(newTrainer));
+                profileChanged(userId);
+                return true;
+            }
         } catch (Exception e) {
             System.err.println("Error registering trainer: " + e.getMessage());
             return false;
@@ -238,9 +723,48 @@ public class UserManager {
     }
 
     public boolean isEmailTaken(String email) {
-        if (email == null) return false;
-        return users.values().stream()
-                .anyMatch(user -> user.getEmail().equalsIgnoreCase(email.trim()));
+        return emailIndex.lookup(email) != null;
+    }
+
+    public boolean isPhoneTaken(String phone) {
+        return phoneIndex.lookup(phone) != null;
+    }
+
+    // Whether the address belongs to a user other than userId
+    public boolean isEmailTaken(String email, String userId) {
+        return emailIndex.isTaken(email, userId);
+    }
+
+    // Whether the number belongs to a user other than userId
+    public boolean isPhoneTaken(String phone, String userId) {
+        return phoneIndex.isTaken(phone, userId);
+    }
+
+    // The version to pass to the optimistic updates; read it before showing the user
+    public long getVersion(String userId) {
+        return userId == null ? baseVersion : versions.getOrDefault(userId.trim(), baseVersion);
+    }
+
+    // Call with the user's stripe held, after the change is applied
+    private void profileChanged(String userId) {
+        versions.put(userId, versionStamps.incrementAndGet());
+    }
+
+    // Versions read before a load or clear never match afterwards
+    private void resetVersions() {
+        versions.clear();
+        baseVersion = versionStamps.incrementAndGet();
+    }
+
+    // Front desk lookups; case, spacing and punctuation do not matter
+    public User findUserByEmail(String email) {
+        String userId = emailIndex.lookup(email);
+        return userId != null ? users.get(userId) : null;
+    }
+
+    public User findUserByPhone(String phone) {
+        String userId = phoneIndex.lookup(phone);
+        return userId != null ? users.get(userId) : null;
     }
 
     public boolean userExists(String userId) {
@@ -251,16 +775,12 @@ public class UserManager {
     public List<Member> getAllMembers() {
         List<Member> members = new ArrayList<>();
         try {
-            for (User user : users.values()) {
+            for (String userId : roleIndex.sortedIds("MEMBER")) {
+                User user = users.get(userId);
                 if (user instanceof Member) {
                     members.add((Member) user);
                 }
             }
-            members.sort((m1, m2) -> {
-                if (m1.getName() == null) return 1;
-                if (m2.getName() == null) return -1;
-                return m1.getName().compareToIgnoreCase(m2.getName());
-            });
         } catch (Exception e) {
             System.err.println("Error getting members: " + e.getMessage());
         }
@@ -270,16 +790,12 @@ public class UserManager {
     public List<Trainer> getAllTrainers() {
         List<Trainer> trainers = new ArrayList<>();
         try {
-            for (User user : users.values()) {
+            for (String userId : roleIndex.sortedIds("TRAINER")) {
+                User user = users.get(userId);
                 if (user instanceof Trainer) {
                     trainers.add((Trainer) user);
                 }
             }
-            trainers.sort((t1, t2) -> {
-                if (t1.getName() == null) return 1;
-                if (t2.getName() == null) return -1;
-                return t1.getName().compareToIgnoreCase(t2.getName());
-            });
         } catch (Exception e) {
             System.err.println("Error getting trainers: " + e.getMessage());
         }
@@ -289,16 +805,12 @@ public class UserManager {
     public List<Admin> getAllAdmins() {
         List<Admin> admins = new ArrayList<>();
         try {
-            for (User user : users.values()) {
+            for (String userId : roleIndex.sortedIds("ADMIN")) {
+                User user = users.get(userId);
                 if (user instanceof Admin) {
                     admins.add((Admin) user);
                 }
             }
-            admins.sort((a1, a2) -> {
-                if (a1.getName() == null) return 1;
-                if (a2.getName() == null) return -1;
-                return a1.getName().compareToIgnoreCase(a2.getName());
-            });
         } catch (Exception e) {
             System.err.println("Error getting admins: " + e.getMessage());
         }
@@ -329,15 +841,15 @@ public class UserManager {
     }
 
     public int getMemberCount() {
-        return getAllMembers().size();
+        return roleIndex.count("MEMBER");
     }
 
     public int getTrainerCount() {
-        return getAllTrainers().size();
+        return roleIndex.count("TRAINER");
     }
 
     public int getAdminCount() {
-        return getAllAdmins().size();
+        return roleIndex.count("ADMIN");
     }
 
     public Map<String, User> getAllUsers() {
@@ -358,6 +870,20 @@ public class UserManager {
             System.out.println("👨‍🏫 Trainers: " + GymUI.YELLOW + trainers + GymUI.RESET);
             System.out.println("⚡ Admins: " + GymUI.PURPLE + admins + GymUI.RESET);
             System.out.println("📊 Total Users: " + GymUI.CYAN + getTotalUserCount() + GymUI.RESET);
+            System.out.println("📝 Writes: " + GymUI.BLUE + saveScheduler.getRequestedWrites() + " requested, " +
+                    saveScheduler.getCompletedFlushes() + " flushed (" + saveScheduler.getCoalescedWrites() +
+                    " coalesced)" + GymUI.RESET);
+            if (users instanceof LazyUserMap) {
+                LazyUserMap lazyUsers = (LazyUserMap) users;
+                System.out.println("🗂️ Loaded Users: " + GymUI.BLUE + lazyUsers.getCachedCount() + " cached, " +
+                        lazyUsers.getPinnedCount() + " pinned (" + lazyUsers.getLoadCount() + " loads)" + GymUI.RESET);
+            }
+            if (compactor != null && compactor.getLastSnapshotTime() > 0) {
+                String snapshotTime = Instant.ofEpochMilli(compactor.getLastSnapshotTime())
+                        .atZone(ZoneId.systemDefault()).toLocalDateTime().withNano(0).toString();
+                System.out.println("💾 Last Snapshot: " + GymUI.BLUE + snapshotTime.replace('T', ' ') +
+                        " (" + compactor.getLastSnapshotBytes() / 1024 + " KB)" + GymUI.RESET);
+            }
             GymUI.printSeparator();
         } catch (Exception e) {
             System.err.println("Error displaying system stats: " + e.getMessage());
@@ -371,11 +897,13 @@ public class UserManager {
             return results;
         }
 
-        String lowerSearchTerm = searchTerm.toLowerCase().trim();
-
         try {
-            for (User user : users.values()) {
-                if (user != null && matchesSearchTerm(user, lowerSearchTerm)) {
+            if (!deferredIndexesReady) {
+                buildDeferredIndexes();
+            }
+            for (String userId : searchIndex.search(searchTerm.trim())) {
+                User user = users.get(userId);
+                if (user != null) {
                     results.add(user);
                 }
             }
@@ -393,56 +921,182 @@ public class UserManager {
         return results;
     }
 
-    private boolean matchesSearchTerm(User user, String searchTerm) {
+    // Typo-tolerant name search for when searchUsers finds nothing: users whose name, or
+    // a word of it, is within a few edits of the term, closest first
+    public List<User> fuzzySearchUsers(String searchTerm) {
+        List<User> results = new ArrayList<>();
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            return results;
+        }
         try {
-            // Check user ID
-            if (user.getUserId() != null && user.getUserId().toLowerCase().contains(searchTerm)) {
-                return true;
+            if (!deferredIndexesReady) {
+                buildDeferredIndexes();
+            }
+            int maxDistance = FuzzyNameIndex.defaultMaxDistance(searchTerm);
+            for (FuzzyNameIndex.Match match : fuzzyIndex.search(searchTerm, maxDistance)) {
+                User user = users.get(match.getUserId());
+                if (user != null) {
+                    results.add(user);
+                }
             }
+        } catch (Exception e) {
+            System.err.println("Error searching users: " + e.getMessage());
+        }
+        return results;
+    }
 
-            // Check name
-            if (user.getName() != null && user.getName().toLowerCase().contains(searchTerm)) {
-                return true;
+    // Date range queries, answered from the temporal indexes
+    public List<Member> getExpiredMembers() {
+        return membersOf(expiryIndex, null, LocalDate.now().minusDays(1));
+    }
+
+    // Memberships that run out between today and the given number of days from now
+    public List<Member> getMembersExpiringWithin(int days) {
+        return membersOf(expiryIndex, LocalDate.now(), LocalDate.now().plusDays(days));
+    }
+
+    public List<Member> getMembersJoinedBetween(LocalDate from, LocalDate to) {
+        return membersOf(joinIndex, from, to);
+    }
+
+    // Users whose last login was more than the given number of days ago; users who
+    // never logged in are not included
+    public List<User> getDormantUsers(int days) {
+        List<User> dormant = new ArrayList<>();
+        for (String userId : datedIds(lastLoginIndex, null, LocalDate.now().minusDays(days + 1L))) {
+            User user = users.get(userId);
+            if (user != null) {
+                dormant.add(user);
             }
+        }
+        return dormant;
+    }
 
-            // Check email
-            if (user.getEmail() != null && user.getEmail().toLowerCase().contains(searchTerm)) {
-                return true;
+    // Counts of the above, for reports that do not list the users
+    public int countMembersExpiringWithin(int days) {
+        ensureDeferredIndexes();
+        return expiryIndex.count(LocalDate.now(), LocalDate.now().plusDays(days));
+    }
+
+    public int countDormantUsers(int days) {
+        ensureDeferredIndexes();
+        return lastLoginIndex.count(null, LocalDate.now().minusDays(days + 1L));
+    }
+
+    private List<Member> membersOf(TemporalIndex index, LocalDate from, LocalDate to) {
+        List<Member> members = new ArrayList<>();
+        for (String userId : datedIds(index, from, to)) {
+            Member member = getMemberById(userId);
+            if (member != null) {
+                members.add(member);
+            }
+        }
+        return members;
+    }
+
+    private List<String> datedIds(TemporalIndex index, LocalDate from, LocalDate to) {
+        ensureDeferredIndexes();
+        return index.between(from, to);
+    }
+
+    private void ensureDeferredIndexes() {
+        try {
+            if (!deferredIndexesReady) {
+                buildDeferredIndexes();
             }
+        } catch (IOException e) {
+            System.err.println("Error building indexes: " + e.getMessage());
+        }
+    }
+
+    // The fields a search term is matched against
+    private static List<String> searchableFields(User user) {
+        List<String> fields = new ArrayList<>(4);
+        fields.add(user.getUserId());
+        fields.add(user.getName());
+        fields.add(user.getEmail());
+        if (user instanceof Member) {
+            Member member = (Member) user;
+            fields.add(member.getMembershipType());
+            fields.add(member.getFitnessGoal());
+        } else if (user instanceof Trainer) {
+            fields.add(((Trainer) user).getSpecialization());
+        } else if (user instanceof Admin) {
+            fields.add(((Admin) user).getAdminLevel());
+        }
+        return fields;
+    }
 
-            // Check role-specific fields
+    // Type-ahead for the front desk: members or trainers whose id, name, or any later
+    // word of the name starts with the prefix, most recently logged in first
+    public List<Member> completeMembers(String prefix, int limit) {
+        List<Member> members = new ArrayList<>();
+        for (User user : complete("MEMBER", prefix, limit)) {
             if (user instanceof Member) {
-                Member member = (Member) user;
-                if (member.getMembershipType() != null &&
-                        member.getMembershipType().toLowerCase().contains(searchTerm)) {
-                    return true;
-                }
-                if (member.getFitnessGoal() != null &&
-                        member.getFitnessGoal().toLowerCase().contains(searchTerm)) {
-                    return true;
-                }
-            } else if (user instanceof Trainer) {
-                Trainer trainer = (Trainer) user;
-                if (trainer.getSpecialization() != null &&
-                        trainer.getSpecialization().toLowerCase().contains(searchTerm)) {
-                    return true;
-                }
-            } else if (user instanceof Admin) {
-                Admin admin = (Admin) user;
-                if (admin.getAdminLevel() != null &&
-                        admin.getAdminLevel().toLowerCase().contains(searchTerm)) {
-                    return true;
-                }
+                members.add((Member) user);
             }
+        }
+        return members;
+    }
 
-            return false;
+    public List<Trainer> completeTrainers(String prefix, int limit) {
+        List<Trainer> trainers = new ArrayList<>();
+        for (User user : complete("TRAINER", prefix, limit)) {
+            if (user instanceof Trainer) {
+                trainers.add((Trainer) user);
+            }
+        }
+        return trainers;
+    }
+
+    private List<User> complete(String role, String prefix, int limit) {
+        List<User> matches = new ArrayList<>();
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return matches;
+        }
+        try {
+            if (!deferredIndexesReady) {
+                buildDeferredIndexes();
+            }
+            for (String userId : prefixIndex.complete(role, prefix, limit)) {
+                User user = users.get(userId);
+                if (user != null) {
+                    matches.add(user);
+                }
+            }
         } catch (Exception e) {
-            System.err.println("Error matching search term for user " + user.getUserId() + ": " + e.getMessage());
-            return false;
+            System.err.println("Error completing names: " + e.getMessage());
+        }
+        return matches;
+    }
+
+    // Lazy mode: read each shard once, preferring users already in memory, without
+    // pulling them all into the user cache
+    private synchronized void buildDeferredIndexes() throws IOException {
+        if (deferredIndexesReady) {
+            return;
+        }
+        LazyUserMap lazyUsers = (LazyUserMap) users;
+        for (int shard = 0; shard < DataManager.SHARD_COUNT; shard++) {
+            for (User user : lazyUsers.loadShard(shard)) {
+                searchIndex.put(user.getUserId(), searchableFields(user));
+                prefixIndex.put(user.getUserId(), user.getRole(), user.getName(), user.getLastLoginAt());
+                fuzzyIndex.put(user.getUserId(), user.getName());
+                indexDates(user);
+                statistics.put(user);
+            }
         }
+        deferredIndexesReady = true;
     }
 
-    // Trainer-Member assignment methods
+    // Trainer-Member assignment methods. Only the member's stripe is locked: trainer
+    // capacity is claimed with Trainer.reserveSlot(), so desks assigning different members
+    // to the same trainer run in parallel and still cannot overbook it.
+
+    // Assign or move a member to a trainer in one step: the new trainer's slot is claimed
+    // first, so a full trainer leaves the current assignment alone, and the move is
+    // journaled as a single assignment record
+    @SuppressWarnings("try")
     public boolean assignTrainerToMember(String memberId, String trainerId) {
         try {
             if (memberId == null || trainerId == null) {
@@ -452,39 +1106,48 @@ public class UserManager {
             memberId = memberId.trim();
             trainerId = trainerId.trim();
 
-            Member member = getMemberById(memberId);
-            Trainer trainer = getTrainerById(trainerId);
-
-            if (member == null || trainer == null) {
-                return false;
-            }
+            try (LockStripes.Held held = lockUsers(memberId)) {
+                Member member = getMemberById(memberId);
+                Trainer trainer = getTrainerById(trainerId);
 
-            if (!member.isActive() || !trainer.isActive()) {
-                return false;
-            }
+                if (member == null || trainer == null) {
+                    return false;
+                }
 
-            if (!trainer.canTakeMoreClients()) {
-                return false;
-            }
+                if (!member.isActive() || !trainer.isActive()) {
+                    return false;
+                }
 
-            // Remove previous assignment if exists
-            if (member.getAssignedTrainerId() != null) {
-                unassignTrainerFromMember(memberId);
-            }
+                String previousTrainerId = member.getAssignedTrainerId();
+                if (trainerId.equals(previousTrainerId)) {
+                    return true;
+                }
 
-            // Create new assignment
-            member.setAssignedTrainerId(trainerId);
-            trainer.addClient(memberId);
-            trainerMemberAssignments.put(memberId, trainerId);
+                if (!trainer.reserveSlot()) {
+                    return false;
+                }
 
-            saveData();
-            return true;
+                if (previousTrainerId != null) {
+                    releaseTrainer(memberId, previousTrainerId);
+                }
+                trainer.addReservedClient(memberId);
+                member.setAssignedTrainerId(trainerId);
+                trainerMemberAssignments.put(memberId, trainerId);
+                indexAssignment(memberId, trainerId);
+                statistics.put(trainer);
+
+                String assignedMemberId = memberId;
+                String assignedTrainerId = trainerId;
+                logHotChange(assignedMemberId, journal -> journal.logAssignment(assignedMemberId, assignedTrainerId));
+                return true;
+            }
         } catch (Exception e) {
             System.err.println("Error assigning trainer to member: " + e.getMessage());
             return false;
         }
     }
 
+    @SuppressWarnings("try")
     public boolean unassignTrainerFromMember(String memberId) {
         try {
             if (memberId == null) {
@@ -492,31 +1155,38 @@ public class UserManager {
             }
 
             memberId = memberId.trim();
-            Member member = getMemberById(memberId);
-
-            if (member == null) {
-                return false;
-            }
-
-            String trainerId = member.getAssignedTrainerId();
-            if (trainerId != null) {
-                Trainer trainer = getTrainerById(trainerId);
-                if (trainer != null) {
-                    trainer.removeClient(memberId);
+            try (LockStripes.Held held = lockUsers(memberId)) {
+                Member member = getMemberById(memberId);
+                if (member == null) {
+                    return false;
                 }
 
-                member.setAssignedTrainerId(null);
-                trainerMemberAssignments.remove(memberId);
-                saveData();
+                String trainerId = member.getAssignedTrainerId();
+                if (trainerId != null) {
+                    releaseTrainer(memberId, trainerId);
+                    member.setAssignedTrainerId(null);
+                    trainerMemberAssignments.remove(memberId);
+                    String unassignedMemberId = memberId;
+                    logHotChange(unassignedMemberId, journal -> journal.logUnassignment(unassignedMemberId));
+                }
+                return true;
             }
-
-            return true;
         } catch (Exception e) {
             System.err.println("Error unassigning trainer from member: " + e.getMessage());
             return false;
         }
     }
 
+    // Caller holds the member's stripe; the member's own fields are left to the caller
+    private void releaseTrainer(String memberId, String trainerId) {
+        Trainer trainer = getTrainerById(trainerId);
+        if (trainer != null) {
+            trainer.removeClient(memberId);
+            statistics.put(trainer);
+        }
+        unindexAssignment(memberId, trainerId);
+    }
+
     public List<Member> getMembersAssignedToTrainer(String trainerId) {
         List<Member> assignedMembers = new ArrayList<>();
 
@@ -527,8 +1197,9 @@ public class UserManager {
 
             trainerId = trainerId.trim();
 
-            for (Member member : getAllMembers()) {
-                if (trainerId.equals(member.getAssignedTrainerId()) && member.isActive()) {
+            for (String memberId : membersByTrainer.getOrDefault(trainerId, Collections.emptySet())) {
+                Member member = getMemberById(memberId);
+                if (member != null && trainerId.equals(member.getAssignedTrainerId()) && member.isActive()) {
                     assignedMembers.add(member);
                 }
             }
@@ -548,41 +1219,41 @@ public class UserManager {
 
     // Revenue calculation methods
     public double getTotalRevenue() {
-        double total = 0.0;
-        try {
-            for (Member member : getAllMembers()) {
-                total += member.getTotalPayments();
-            }
-        } catch (Exception e) {
-            System.err.println("Error calculating total revenue: " + e.getMessage());
-        }
-        return total;
+        ensureDeferredIndexes();
+        return statistics.getTotalRevenue();
     }
 
     public double getTotalTrainerEarnings() {
-        double total = 0.0;
-        try {
-            for (Trainer trainer : getAllTrainers()) {
-                total += trainer.getTotalEarnings();
-            }
-        } catch (Exception e) {
-            System.err.println("Error calculating total trainer earnings: " + e.getMessage());
-        }
-        return total;
+        ensureDeferredIndexes();
+        return statistics.getTotalTrainerEarnings();
     }
 
     // User management methods
+    // Deleting may touch a trainer and all of its clients, so it has the store to itself
+    @SuppressWarnings("try")
     public boolean deleteUser(String userId) {
         if (userId == null || userId.trim().isEmpty()) {
             return false;
         }
 
-        try {
+        try (LockStripes.Held held = lockStore()) {
             userId = userId.trim();
             User user = users.get(userId);
             if (user != null) {
+                // Drop the user's assignments first, so no member or trainer points at it
+                if (user instanceof Member) {
+                    unassignTrainerFromMember(userId);
+                } else if (user instanceof Trainer) {
+                    for (String memberId : new ArrayList<>(membersByTrainer.getOrDefault(userId, Collections.emptySet()))) {
+                        unassignTrainerFromMember(memberId);
+                    }
+                }
                 users.remove(userId);
-                saveData();
+                versions.remove(userId);
+                unindexUser(userId);
+                pendingLogins.remove(userId);
+                String deletedUserId = userId;
+                logChange(deletedUserId, journal -> journal.logDelete(deletedUserId));
                 return true;
             }
         } catch (Exception e) {
@@ -591,12 +1262,29 @@ public class UserManager {
         return false;
     }
 
+    @SuppressWarnings("try")
     public void clearAllUsers() {
-        try {
+        try (LockStripes.Held held = lockStore()) {
             users.clear();
+            resetVersions();
+            emailIndex.clear();
+            phoneIndex.clear();
+            roleIndex.clear();
+            searchIndex.clear();
+            prefixIndex.clear();
+            fuzzyIndex.clear();
+            clearTemporalIndexes();
+            statistics.clear();
             trainerMemberAssignments.clear();
-            currentUser = null;
-            saveData();
+            membersByTrainer.clear();
+            closeAllSessions();
+            if (dataManager.getHotFields() != null) {
+                dataManager.getHotFields().clear();
+            }
+            // An empty store is cheapest to persist as a fresh checkpoint
+            if (!dataManager.checkpoint(users, trainerMemberAssignments)) {
+                System.out.println(GymUI.RED + "⚠️ Data save failed!" + GymUI.RESET);
+            }
         } catch (Exception e) {
             System.err.println("Error clearing all users: " + e.getMessage());
         }
@@ -604,6 +1292,7 @@ public class UserManager {
 
     public boolean backupData() {
         try {
+            flush();
             return dataManager.backupData();
         } catch (Exception e) {
             System.err.println("Error backing up data: " + e.getMessage());
@@ -613,15 +1302,23 @@ public class UserManager {
 
     // User status update methods
     public boolean updateUserStatus(String userId, boolean isActive) {
-        try {
+        return updateUserStatus(userId, isActive, ANY_VERSION);
+    }
+
+    // Optimistic update: expectedVersion is the version the caller read with
+    // getVersion(userId). A stale write returns false and changes nothing.
+    @SuppressWarnings("try")
+    public boolean updateUserStatus(String userId, boolean isActive, long expectedVersion) {
+        try (LockStripes.Held held = lockUsers(userId)) {
             if (userId == null) {
                 return false;
             }
 
             User user = users.get(userId.trim());
-            if (user != null) {
+            if (user != null && (expectedVersion == ANY_VERSION || getVersion(user.getUserId()) == expectedVersion)) {
                 user.setActive(isActive);
-                saveData();
+                logHotChange(user.getUserId(), journal -> journal.logStatus(user.getUserId(), isActive));
+                profileChanged(user.getUserId());
                 return true;
             }
         } catch (Exception e) {
@@ -631,19 +1328,27 @@ public class UserManager {
     }
 
     public boolean updateUserEmail(String userId, String newEmail) {
-        try {
+        return updateUserEmail(userId, newEmail, ANY_VERSION);
+    }
+
+    // Optimistic, as updateUserStatus; also false if another user has the address
+    @SuppressWarnings("try")
+    public boolean updateUserEmail(String userId, String newEmail, long expectedVersion) {
+        try (LockStripes.Held held = lockUsers(userId, emailKey(newEmail))) {
             if (userId == null || newEmail == null) {
                 return false;
             }
 
-            if (isEmailTaken(newEmail)) {
+            if (emailIndex.isTaken(newEmail, userId.trim())) {
                 return false;
             }
 
             User user = users.get(userId.trim());
-            if (user != null) {
+            if (user != null && (expectedVersion == ANY_VERSION || getVersion(user.getUserId()) == expectedVersion)) {
                 user.setEmail(newEmail.trim());
-                saveData();
+                indexUser(user);
+                logChange(user.getUserId(), journal -> journal.logEmail(user.getUserId(), user.getEmail()));
+                profileChanged(user.getUserId());
                 return true;
             }
         } catch (Exception e) {
@@ -652,16 +1357,48 @@ public class UserManager {
         return false;
     }
 
+    @SuppressWarnings("try")
+    public boolean updateUserPhone(String userId, String newPhone) {
+        try (LockStripes.Held held = lockUsers(userId, phoneKey(newPhone))) {
+            if (userId == null || newPhone == null) {
+                return false;
+            }
+
+            if (phoneIndex.isTaken(newPhone, userId.trim())) {
+                return false;
+            }
+
+            User user = users.get(userId.trim());
+            if (user != null) {
+                user.setPhoneNumber(newPhone.trim());
+                phoneIndex.put(user.getUserId(), user.getPhoneNumber());
+                logChange(user.getUserId(), journal -> journal.logUserUpdate(user));
+                profileChanged(user.getUserId());
+                return true;
+            }
+        } catch (Exception e) {
+            System.err.println("Error updating user phone: " + e.getMessage());
+        }
+        return false;
+    }
+
     public boolean updateUserPassword(String userId, String newPassword) {
-        try {
+        return updateUserPassword(userId, newPassword, ANY_VERSION);
+    }
+
+    // Optimistic, as updateUserStatus; also false if the password is under 4 characters
+    @SuppressWarnings("try")
+    public boolean updateUserPassword(String userId, String newPassword, long expectedVersion) {
+        try (LockStripes.Held held = lockUsers(userId)) {
             if (userId == null || newPassword == null || newPassword.length() < 4) {
                 return false;
             }
 
             User user = users.get(userId.trim());
-            if (user != null) {
+            if (user != null && (expectedVersion == ANY_VERSION || getVersion(user.getUserId()) == expectedVersion)) {
                 user.setPassword(newPassword);
-                saveData();
+                logChange(user.getUserId(), journal -> journal.logPassword(user.getUserId(), newPassword));
+                profileChanged(user.getUserId());
                 return true;
             }
         } catch (Exception e) {
@@ -670,6 +1407,159 @@ public class UserManager {
         return false;
     }
 
+    // Member activity methods
+    public boolean recordPayment(String memberId, double amount) {
+        return recordPaymentTotal(memberId, amount) >= 0;
+    }
+
+    // Record a payment and return the member's total including it, read under the same
+    // lock so no other payment slips in between; -1 if nothing was recorded
+    @SuppressWarnings("try")
+    public double recordPaymentTotal(String memberId, double amount) {
+        try (LockStripes.Held held = lockUsers(memberId)) {
+            Member member = getMemberById(memberId);
+            if (member == null || amount < 0) {
+                return -1;
+            }
+
+            member.addPayment(amount);
+            double total = member.getTotalPayments();
+            logHotChange(member.getUserId(), journal -> journal.logPayment(member.getUserId(), total));
+            return total;
+        } catch (Exception e) {
+            System.err.println("Error recording payment: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    @SuppressWarnings("try")
+    public boolean markAttendance(String memberId) {
+        try (LockStripes.Held held = lockUsers(memberId)) {
+            Member member = getMemberById(memberId);
+            if (member == null) {
+                return false;
+            }
+
+            String today = LocalDate.now().toString();
+            member.markAttendance();
+            logChange(member.getUserId(), journal -> journal.logAttendance(member.getUserId(), today));
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error marking attendance: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // A trainer's plan for one of their members, kept on both
+    @SuppressWarnings("try")
+    public boolean createWorkoutPlan(String trainerId, String memberId, String workoutPlan) {
+        if (trainerId == null || memberId == null || workoutPlan == null) {
+            return false;
+        }
+        try (LockStripes.Held held = lockUsers(trainerId, memberId)) {
+            Trainer trainer = getTrainerById(trainerId);
+            Member member = getMemberById(memberId);
+            if (trainer == null || member == null) {
+                return false;
+            }
+
+            trainer.createWorkoutPlan(member.getUserId(), workoutPlan);
+            member.addWorkout(workoutPlan);
+            logChange(member.getUserId(), journal -> journal.logUserUpdate(member));
+            logChange(trainer.getUserId(), journal -> journal.logUserUpdate(trainer));
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error creating workout plan: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Returns what the session earned at the trainer's current rate, or -1 if there is no
+    // such trainer
+    @SuppressWarnings("try")
+    public double completeSession(String trainerId, String memberId, double hoursWorked) {
+        if (trainerId == null || memberId == null) {
+            return -1;
+        }
+        try (LockStripes.Held held = lockUsers(trainerId)) {
+            Trainer trainer = getTrainerById(trainerId);
+            if (trainer == null) {
+                return -1;
+            }
+
+            trainer.completeSession(memberId.trim(), hoursWorked);
+            logChange(trainer.getUserId(), journal -> journal.logUserUpdate(trainer));
+            return hoursWorked * trainer.getHourlyRate();
+        } catch (Exception e) {
+            System.err.println("Error completing session: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // Persist changes made directly on a user object (profile edits, schedules, plans)
+    @SuppressWarnings("try")
+    public boolean saveUserChanges(User user) {
+        if (user == null) {
+            return false;
+        }
+        try (LockStripes.Held held = lockUsers(user.getUserId(), emailKey(user.getEmail()), phoneKey(user.getPhoneNumber()))) {
+            if (!users.containsKey(user.getUserId())) {
+                return false;
+            }
+
+            // Contact details may have been edited on the object directly
+            if (!indexUser(user)) {
+                System.out.println(GymUI.YELLOW + "⚠️ " + user.getUserId() + " shares an email or phone number with another user" + GymUI.RESET);
+            }
+            logChange(user.getUserId(), journal -> journal.logUserUpdate(user));
+            profileChanged(user.getUserId());
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error saving user changes: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Apply edits to a user the caller read earlier, as saveUserChanges does, unless the
+    // user was changed, deleted or replaced since the caller read expectedVersion with
+    // getVersion; ANY_VERSION skips the version check. The edits go to the stored user,
+    // which in lazy mode may be a fresh copy of the object the caller holds. Email has its
+    // own update method, which checks that it stays unique.
+    public <T extends User> boolean updateUser(T user, long expectedVersion, Consumer<? super T> change) {
+        return updateUser(user, expectedVersion, null, change);
+    }
+
+    // As updateUser, also setting the phone number in the same step; nothing changes if
+    // the number belongs to another user. A null newPhone leaves the number alone.
+    @SuppressWarnings({"try", "unchecked"})
+    public <T extends User> boolean updateUser(T user, long expectedVersion, String newPhone, Consumer<? super T> change) {
+        if (user == null || change == null) {
+            return false;
+        }
+        try (LockStripes.Held held = lockUsers(user.getUserId(), phoneKey(newPhone))) {
+            User current = users.get(user.getUserId());
+            if (current == null || current.getClass() != user.getClass()
+                    || (expectedVersion != ANY_VERSION && getVersion(user.getUserId()) != expectedVersion)) {
+                return false;
+            }
+            if (newPhone != null && phoneIndex.isTaken(newPhone, current.getUserId())) {
+                return false;
+            }
+
+            change.accept((T) current);
+            if (newPhone != null) {
+                current.setPhoneNumber(newPhone.trim());
+            }
+            indexUser(current);
+            logChange(current.getUserId(), journal -> journal.logUserUpdate(current));
+            profileChanged(current.getUserId());
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error updating user: " + e.getMessage());
+            return false;
+        }
+    }
+
     // Enhanced reporting method
     public void displayDetailedReport() {
         try {
@@ -677,33 +1567,29 @@ public class UserManager {
             System.out.println("║                         DETAILED SYSTEM REPORT                      ║");
             System.out.println("╚══════════════════════════════════════════════════════════════════════╝" + GymUI.RESET);
 
-            // User statistics
+            // User statistics, read from the running totals rather than by scanning users
+            ensureDeferredIndexes();
             int totalMembers = getMemberCount();
             int totalTrainers = getTrainerCount();
             int totalAdmins = getAdminCount();
-            int activeMembers = 0;
-            int expiredMembers = 0;
-
-            // Calculate active/expired members
-            for (Member member : getAllMembers()) {
-                if (member.isActive() && !member.isMembershipExpired()) {
-                    activeMembers++;
-                } else if (member.isMembershipExpired()) {
-                    expiredMembers++;
-                }
-            }
+            int activeMembers = statistics.getActiveMemberCount();
+            int expiredMembers = statistics.getExpiredMemberCount();
+            int expiringSoon = countMembersExpiringWithin(7);
+            int dormantUsers = countDormantUsers(30);
 
             // Display statistics
             System.out.println(GymUI.BOLD + "📊 USER STATISTICS:" + GymUI.RESET);
             System.out.println("Total Members: " + GymUI.CYAN + totalMembers + GymUI.RESET);
             System.out.println("  └─ Active: " + GymUI.GREEN + activeMembers + GymUI.RESET);
             System.out.println("  └─ Expired: " + GymUI.RED + expiredMembers + GymUI.RESET);
+            System.out.println("  └─ Expiring in 7 days: " + GymUI.YELLOW + expiringSoon + GymUI.RESET);
+            System.out.println("Not logged in for 30+ days: " + GymUI.GRAY + dormantUsers + GymUI.RESET);
             System.out.println("Total Trainers: " + GymUI.YELLOW + totalTrainers + GymUI.RESET);
             System.out.println("Total Admins: " + GymUI.PURPLE + totalAdmins + GymUI.RESET);
 
             // Financial statistics
-            double totalRevenue = getTotalRevenue();
-            double totalTrainerEarnings = getTotalTrainerEarnings();
+            double totalRevenue = statistics.getTotalRevenue();
+            double totalTrainerEarnings = statistics.getTotalTrainerEarnings();
             double netRevenue = totalRevenue - totalTrainerEarnings;
 
             System.out.println("\n" + GymUI.BOLD + "💰 FINANCIAL STATISTICS:" + GymUI.RESET);
@@ -712,12 +1598,7 @@ public class UserManager {
             System.out.println("Net Revenue: " + GymUI.CYAN + "$" + String.format("%.2f", netRevenue) + GymUI.RESET);
 
             // Membership type breakdown
-            Map<String, Integer> membershipTypes = new HashMap<>();
-            for (Member member : getAllMembers()) {
-                String type = member.getMembershipType();
-                membershipTypes.put(type, membershipTypes.getOrDefault(type, 0) + 1);
-            }
-
+            Map<String, Integer> membershipTypes = statistics.getMembershipBreakdown();
             if (!membershipTypes.isEmpty()) {
                 System.out.println("\n" + GymUI.BOLD + "📋 MEMBERSHIP BREAKDOWN:" + GymUI.RESET);
                 for (Map.Entry<String, Integer> entry : membershipTypes.entrySet()) {
@@ -726,23 +1607,10 @@ public class UserManager {
             }
 
             // Trainer utilization
-            int availableTrainers = 0;
-            int fullyBookedTrainers = 0;
-
-            for (Trainer trainer : getAllTrainers()) {
-                if (trainer.isActive()) {
-                    if (trainer.canTakeMoreClients()) {
-                        availableTrainers++;
-                    } else {
-                        fullyBookedTrainers++;
-                    }
-                }
-            }
-
             if (totalTrainers > 0) {
                 System.out.println("\n" + GymUI.BOLD + "👨‍🏫 TRAINER UTILIZATION:" + GymUI.RESET);
-                System.out.println("Available: " + GymUI.GREEN + availableTrainers + GymUI.RESET);
-                System.out.println("Fully Booked: " + GymUI.RED + fullyBookedTrainers + GymUI.RESET);
+                System.out.println("Available: " + GymUI.GREEN + statistics.getAvailableTrainerCount() + GymUI.RESET);
+                System.out.println("Fully Booked: " + GymUI.RED + statistics.getFullyBookedTrainerCount() + GymUI.RESET);
             }
 
         } catch (Exception e) {
@@ -0,0 +1,33 @@
+// UserSession.java - One logged-in caller; each terminal or client holds its own
+public class UserSession {
+    private final User user;
+    private final String token;
+    private final long loginTime;
+    private volatile long lastAccess;
+    private volatile boolean open = true;
+
+    UserSession(User user, String token) {
+        this.user = user;
+        this.token = token;
+        this.loginTime = System.currentTimeMillis();
+        this.lastAccess = loginTime;
+    }
+
+    public User getUser() { return user; }
+    public String getUserId() { return user.getUserId(); }
+    // Opaque; the session is looked up again with UserManager.getSession(token)
+    public String getToken() { return token; }
+    public long getLoginTime() { return loginTime; }
+    public long getLastAccess() { return lastAccess; }
+
+    // False once logged out, expired, or when the data was cleared or restored underneath it
+    public boolean isOpen() { return open; }
+
+    void touch(long now) {
+        lastAccess = now;
+    }
+
+    void close() {
+        open = false;
+    }
+}